@@ -0,0 +1,56 @@
+package benchmarks;
+
+import commons.ExcelUtils;
+import commons.IngredientMatcher;
+import org.openjdk.jmh.annotations.*;
+import tests.IngredientMatcherTest;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// The add/eliminate decision made by classifyAndStore, per recipe, over synthetic ingredient lists:
+// the compiled matcher against the exact set lookup it replaced
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassificationBenchmark {
+
+    private static final int RECIPES = 1024;
+
+    private ExcelUtils.DietRules rules;
+    private IngredientMatcher matcher;
+    private List<List<String>> recipes;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        rules = ExcelUtils.loadDietRules("LCHF", "Final list for LCHFElimination");
+        matcher = rules.matcher();
+        recipes = IngredientMatcherTest.syntheticRecipes(rules, RECIPES, 12, 42);
+    }
+
+    private List<String> nextRecipe() {
+        next = (next + 1) & (RECIPES - 1);
+        return recipes.get(next);
+    }
+
+    @Benchmark
+    public boolean compiledMatcher() {
+        IngredientMatcher.Result m = matcher.match(nextRecipe());
+        return !m.hasElimination() && m.hasAdd();
+    }
+
+    @Benchmark
+    public boolean setLookup() {
+        Set<String> ingSet = new HashSet<>();
+        nextRecipe().forEach(ing -> ingSet.add(ing.toLowerCase().trim()));
+        boolean hasElimination = rules.eliminate.stream().anyMatch(ingSet::contains);
+        boolean hasAdd = rules.add.stream().anyMatch(ingSet::contains);
+        return !hasElimination && hasAdd;
+    }
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import commons.ConfigReader;
+import commons.DbManager;
+import commons.Recipe;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Single-row upsert against a batched flush, per row, on the Postgres from Config.properties.
+// Writes to its own bench_recipes table. Without a reachable database the setup fails and JMH
+// reports this benchmark as errored while the others still run.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DbInsertBenchmark {
+
+    private static final String TABLE = "bench_recipes";
+    private static final int BATCH = 50;
+
+    private DbManager db;
+    private final AtomicLong seq = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        db = new DbManager(ConfigReader.load());
+        db.resetTable(TABLE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (db != null) db.close();
+    }
+
+    private Recipe recipe() {
+        long n = seq.incrementAndGet();
+        Recipe r = new Recipe();
+        r.Recipe_Name = "Benchmark recipe " + n;
+        r.Recipe_URL = "https://www.tarladalal.com/bench-recipe-" + n;
+        r.Ingredients = List.of("1 cup paneer", "2 tbsp ghee", "salt to taste");
+        r.Preparation_Time = "10 mins";
+        r.Cooking_Time = "20 mins";
+        r.Recipe_Description = "Synthetic row for the insert benchmark";
+        r.Preparation_method = "mix. cook. serve.";
+        r.Nutrient_values = "Energy:200 cal|Protein:10 g";
+        r.Recipe_Category = "snack";
+        r.Food_Category = "veg";
+        r.Tag = "benchmark";
+        r.No_of_servings = "2";
+        r.Cuisine_category = "indian";
+        return r;
+    }
+
+    @Benchmark
+    public void singleInsert() throws Exception {
+        db.insertRecipe(TABLE, recipe());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void batchedInsert() throws Exception {
+        for (int i = 0; i < BATCH; i++) db.queueRecipe(TABLE, recipe());
+        db.flush();
+    }
+}
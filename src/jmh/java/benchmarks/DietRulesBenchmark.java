@@ -0,0 +1,52 @@
+package benchmarks;
+
+import commons.ExcelUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Loading the diets' eliminate/add lists: one sheet from the workbook, every diet in one streaming
+// pass, and every diet from the compiled rules cache
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DietRulesBenchmark {
+
+    @Param({"Final list for LCHFElimination", "Final list for LFV Elimination"})
+    public String sheet;
+
+    private final Map<String, String> dietSheets = new LinkedHashMap<>();
+    private Path cacheDir;
+
+    @Setup
+    public void setup() throws IOException {
+        dietSheets.put("LCHF", "Final list for LCHFElimination");
+        dietSheets.put("LFV", "Final list for LFV Elimination");
+        cacheDir = Files.createTempDirectory("rules-cache");
+        ExcelUtils.loadDietRules(dietSheets, cacheDir);
+    }
+
+    @Benchmark
+    public ExcelUtils.DietRules loadDietRules() throws Exception {
+        return ExcelUtils.loadDietRules(sheet);
+    }
+
+    @Benchmark
+    public List<ExcelUtils.DietRules> loadAllDietsStreaming() throws Exception {
+        return ExcelUtils.loadDietRules(dietSheets);
+    }
+
+    @Benchmark
+    public List<ExcelUtils.DietRules> loadAllDietsFromCache() throws Exception {
+        return ExcelUtils.loadDietRules(dietSheets, cacheDir);
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import commons.Recipe;
+import org.openjdk.jmh.annotations.*;
+import pages.HttpRecipeExtractor;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// HTML to Recipe for the saved fixture pages (jsoup parse plus every locator of RecipeDetailsDocument)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractionBenchmark {
+
+    @Param({"paneer-tikka.html", "methi-thepla.html"})
+    public String fixture;
+
+    private String html;
+    private String url;
+
+    @Setup
+    public void setup() throws Exception {
+        String path = "fixtures/recipes/" + fixture;
+        try (InputStream in = ExtractionBenchmark.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) throw new IllegalStateException("Missing fixture " + path);
+            html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        url = "https://www.tarladalal.com/" + fixture.replace(".html", "");
+    }
+
+    @Benchmark
+    public Recipe parse() {
+        return HttpRecipeExtractor.parse(html, url);
+    }
+}
@@ -1,43 +1,85 @@
 package baseClass;
 
 import driverFactory.BrowserFactory;
+import driverFactory.BrowserProfile;
+import driverFactory.DriverPool;
+import driverFactory.TabPool;
 import commons.ConfigReader;
 import commons.DbManager;
-import org.openqa.selenium.WebDriver;
+import commons.RecipeWriteQueue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.testng.annotations.*;
+import utilities.HostThrottle;
+import utilities.Metrics;
+
+import java.nio.file.Path;
 
 
 import java.sql.SQLException;
 
 public class BaseTest {
+    private static final Logger log = LogManager.getLogger(BaseTest.class.getName());
 
     protected static DbManager db;       
     protected static ConfigReader cfg;    
+    protected static DriverPool driverPool;
+    protected static TabPool tabPool;     // set instead of leasing whole drivers when tabsPerBrowser > 1
+    protected static RecipeWriteQueue writeQueue;
+    protected static HostThrottle throttle;
+    protected static Metrics.Server metricsServer;  // null when metrics.port is 0
 
     @BeforeClass(alwaysRun = true)
     public void setUpClass() throws Exception {
         cfg = ConfigReader.load();
+        if (cfg.metricsPort > 0) metricsServer = new Metrics.Server(cfg.metricsPort);
         db = new DbManager(cfg);
+        writeQueue = new RecipeWriteQueue(db, cfg.writeQueueCapacity, cfg.writeQueueWriters);
+        Metrics.gauge("scraper_write_queue_depth", "Recipes waiting for a DB writer", writeQueue::getQueueDepth);
+        throttle = new HostThrottle(cfg.rateLimitPerSecond, cfg.rateLimitBurst,
+                cfg.minInFlight, cfg.initialInFlight, cfg.maxInFlight, cfg.latencyTolerance);
+        BrowserFactory.setProfile(BrowserProfile.LEAN_NAME.equals(cfg.browserProfile)
+                ? BrowserProfile.lean(cfg.browserBlockTypes, cfg.browserBlockUrls, cfg.browserReadySelector)
+                : BrowserProfile.FULL);
+        driverPool = new DriverPool(cfg.driverPoolSize, cfg.driverMaxUses, cfg.headless);
+        if (cfg.tabsPerBrowser > 1) {
+            tabPool = new TabPool(cfg.driverPoolSize, cfg.tabsPerBrowser, cfg.driverMaxUses * cfg.tabsPerBrowser, cfg.headless);
+        }
+        // Only the selenium backend leases drivers, so don't start browsers for http or archive replay
+        if ("selenium".equals(cfg.scraperBackend)) {
+            if (tabPool != null) {
+                tabPool.preWarm();
+            } else {
+                driverPool.preWarm();
+            }
+        }
     }
 
     @AfterClass(alwaysRun = true)
     public void tearDownClass() {
+        if (driverPool != null) driverPool.close();
+        if (tabPool != null) tabPool.close();
+        // Drain pending writes before the connections go away
+        if (writeQueue != null) {
+            try {
+                writeQueue.close();
+            } catch (Exception e) {
+                log.error("Write queue drain failed with " + writeQueue.getUndrained() + " rows not written", e);
+            }
+        }
         if (db != null) {
             try { db.close(); } catch (SQLException ignored) {}
         }
+        if (cfg != null && !cfg.metricsSummaryFile.isEmpty()) {
+            try {
+                Metrics.writeJsonSummary(Path.of(cfg.metricsSummaryFile));
+            } catch (Exception e) {
+                log.error("Could not write the metrics summary to " + cfg.metricsSummaryFile, e);
+            }
+        }
+        if (metricsServer != null) {
+            metricsServer.close();
+            metricsServer = null;
+        }
     }
-
-    @BeforeMethod(alwaysRun = true)
-    public void setUpMethod() {
-        BrowserFactory.createDriver(cfg.headless);
-    }
-
-    @AfterMethod(alwaysRun = true)
-    public void tearDownMethod() {
-        BrowserFactory.quitDriver();
-    }
-
-    protected WebDriver getDriver() {
-        return BrowserFactory.getDriver();
-    }
-}
\ No newline at end of file
+}
@@ -2,25 +2,81 @@ package commons;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 public class ConfigReader {
     public String dbHost, dbName, dbUser, dbPassword, excelPath;
     public int dbPort, threadPoolSize;
+    public int dbPoolSize, dbBatchSize;  // pooled connections, rows per batched flush
+    public long dbFlushIntervalMs;       // max time a queued row waits before it is flushed
+    public int writeQueueCapacity, writeQueueWriters; // write-behind queue between scrapers and DbManager
     public String scraperLCHFStartUrl, scraperLFVStartUrl;
     public boolean headless;
     // New fields for scraper customization
-    public String scraperMode;          // ALL, FIRST_N, KEYWORD, SINGLE_URL
+    public String scraperMode;          // ALL, FIRST_N, KEYWORD, SINGLE_URL, REPLAY, RECLASSIFY, COORDINATOR, WORKER
     public int scraperLimit;            // for FIRST_N
     public String scraperKeyword;       // for KEYWORD
     public String scraperSingleRecipeUrl; // for SINGLE_URL
+    public int driverPoolSize;          // drivers shared by the scrape workers
+    public int tabsPerBrowser;          // > 1: workers lease tabs of shared browsers instead of whole drivers
+    public int driverMaxUses;           // leases before a pooled driver is replaced
+    public String scraperBackend;       // selenium | http, resolved for the current mode
+    public int queueCapacity;           // URLs buffered between the listing walker and the workers
+    public boolean multiDiet;           // crawl once and classify against every diet
+    public String scraperStartUrl;      // start URL of the multi-diet crawl
+    public Map<String, String> dietSheets = new LinkedHashMap<>(); // diet name -> rules sheet
+    public boolean resume;              // continue the last crawl from its frontier checkpoint
+    public long checkpointIntervalMs;   // how often the frontier is written to Postgres
+    public int maxAttempts;             // failed URLs are retried on resume up to this many attempts
+    public String scraperExecutor;      // "platform" (fixed worker threads) or "virtual" (thread per URL)
+    public int maxInFlight;             // scrapes running at once in virtual mode, and the AIMD ceiling per host
+    public double rateLimitPerSecond;   // per-host token bucket, page fetches per second, 0 = off
+    public int rateLimitBurst;
+    public int minInFlight, initialInFlight;
+    public double latencyTolerance;     // latency above baseline x this counts as congestion
+    public String discoveryMode;        // "pages" (parallel by page URL) or "click" (Next button)
+    public String discoveryPageParam;   // page-number query parameter, detected when empty
+    public int discoveryParallelism;    // listing pages fetched at once
+    public int metricsPort;             // Prometheus endpoint on 127.0.0.1, 0 = off
+    public String metricsSummaryFile;   // JSON written at the end of the run, empty = none
+    public boolean incremental;         // keep stored recipes and rewrite only pages that changed
+    public String archiveDir;           // raw pages are archived here (read back in REPLAY mode), empty = off
+    public int reclassifyFetchSize;     // rows per cursor round trip when RECLASSIFY streams stored recipes
+    public String visitedMode;          // "exact" (canonical URL strings) or "compact" (64-bit fingerprints)
+    public int visitedExpected;         // expected URLs per crawl, sizes the compact visited set
+    public boolean urlLowercasePath;    // treat recipe URL paths as case-insensitive when deduplicating
+    public List<String> urlDropParams = new ArrayList<>(); // query parameters ignored on top of utm_*, gclid, ...
+    public String rulesCacheDir;        // compiled diet rules cached here by workbook hash, empty = always read Excel
+    public String browserProfile;       // "full" or "lean" (eager load strategy + request blocking)
+    public List<String> browserBlockTypes = new ArrayList<>(); // lean: image, font, stylesheet, media, script
+    public List<String> browserBlockUrls = new ArrayList<>();  // lean: Chrome wildcard URL patterns to refuse
+    public String browserReadySelector; // CSS selector a detail page is read after
+    public String distributedWorkerId;  // lease owner name in crawl_queue, unique per WORKER process
+    public int distributedBatchSize;    // URLs a worker claims per round trip
+    public long distributedLeaseMs;     // a claimed URL goes back to the queue if not renewed within this
+    public long distributedPollMs;      // idle worker wait before claiming again
+    public boolean distributedWait;     // COORDINATOR waits until the workers have drained the queue
 
     public static ConfigReader load() throws IOException {
         Properties prop = new Properties();
-        try (InputStream in = ConfigReader.class.getClassLoader().getResourceAsStream("config.properties")) {
+        // The file is Config.properties; the lower-case name only resolves on case-insensitive file systems
+        InputStream resource = ConfigReader.class.getClassLoader().getResourceAsStream("config.properties");
+        if (resource == null) resource = ConfigReader.class.getClassLoader().getResourceAsStream("Config.properties");
+        try (InputStream in = resource) {
             if (in == null) throw new IOException("config.properties not found in resources!");
             prop.load(in);
         }
+        // -Dkey=value overrides the file, so several WORKER processes can share one config
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("scraper.") || key.startsWith("db.") || key.startsWith("metrics.")
+                    || key.startsWith("distributed.") || key.startsWith("browser.") || key.equals("headless")) {
+                prop.setProperty(key, System.getProperty(key));
+            }
+        }
 
         ConfigReader cfg = new ConfigReader();
         cfg.dbHost = prop.getProperty("db.host");
@@ -29,6 +85,11 @@ public class ConfigReader {
         cfg.dbUser = prop.getProperty("db.user");
         cfg.dbPassword = prop.getProperty("db.password");
         cfg.excelPath = prop.getProperty("ExcelPath");
+        cfg.dbPoolSize = Integer.parseInt(prop.getProperty("db.poolSize", "4"));
+        cfg.dbBatchSize = Integer.parseInt(prop.getProperty("db.batchSize", "50"));
+        cfg.dbFlushIntervalMs = Long.parseLong(prop.getProperty("db.flushIntervalMs", "2000"));
+        cfg.writeQueueCapacity = Integer.parseInt(prop.getProperty("db.writeQueue.capacity", "500"));
+        cfg.writeQueueWriters = Integer.parseInt(prop.getProperty("db.writeQueue.writers", "1"));
 
         cfg.scraperLCHFStartUrl = prop.getProperty("scraperLCHFStartUrl");
         cfg.scraperLFVStartUrl = prop.getProperty("scraperLFVStartUrl");
@@ -42,8 +103,101 @@ public class ConfigReader {
         cfg.scraperKeyword = prop.getProperty("scraper.keyword", "");
         cfg.scraperSingleRecipeUrl = prop.getProperty("scraper.singleRecipeUrl", "");
 
+        // Driver pool, defaults to one driver per worker thread
+        cfg.driverPoolSize = Integer.parseInt(prop.getProperty("scraper.driverPool.size", String.valueOf(cfg.threadPoolSize)));
+        cfg.driverMaxUses = Integer.parseInt(prop.getProperty("scraper.driverPool.maxUses", "50"));
+        cfg.tabsPerBrowser = Math.max(1, Integer.parseInt(prop.getProperty("scraper.driverPool.tabsPerBrowser", "1")));
+
+        // Browser profile for the selenium backend
+        cfg.browserProfile = prop.getProperty("browser.profile", "full").toLowerCase();
+        for (String type : prop.getProperty("browser.block.types", "").split(",")) {
+            if (!type.isBlank()) cfg.browserBlockTypes.add(type.trim());
+        }
+        for (String url : prop.getProperty("browser.block.urls", "").split(",")) {
+            if (!url.isBlank()) cfg.browserBlockUrls.add(url.trim());
+        }
+        cfg.browserReadySelector = prop.getProperty("browser.readySelector", "");
+
+        // Detail page backend, scraper.backend.<MODE> overrides the default. REPLAY reads the page archive,
+        // RECLASSIFY reads the stored recipes and extracts nothing. COORDINATOR only queues URLs, so it gets
+        // the browserless http backend and no driver pool is pre-warmed for it.
+        String defaultBackend = switch (cfg.scraperMode) {
+            case "REPLAY" -> "archive";
+            case "RECLASSIFY" -> "db";
+            case "COORDINATOR" -> "http";
+            default -> prop.getProperty("scraper.backend", "selenium");
+        };
+        cfg.scraperBackend = prop.getProperty("scraper.backend." + cfg.scraperMode, defaultBackend).toLowerCase();
 
+        // Worker executor. In virtual mode concurrency is bounded by maxInFlight rather than by threads:
+        // by default one scrape per pooled browser, or a few connections per worker for the http backend
+        cfg.scraperExecutor = prop.getProperty("scraper.executor", "platform").toLowerCase();
+        int defaultInFlight = "selenium".equals(cfg.scraperBackend) ? cfg.driverPoolSize * cfg.tabsPerBrowser : cfg.threadPoolSize * 4;
+        cfg.maxInFlight = Integer.parseInt(prop.getProperty("scraper.maxInFlight", String.valueOf(defaultInFlight)));
+
+        // Per-host rate limit and adaptive concurrency (AIMD between min and maxInFlight)
+        cfg.rateLimitPerSecond = Double.parseDouble(prop.getProperty("scraper.rateLimit.perSecond", "0"));
+        cfg.rateLimitBurst = Integer.parseInt(prop.getProperty("scraper.rateLimit.burst", "2"));
+        cfg.minInFlight = Integer.parseInt(prop.getProperty("scraper.minInFlight", "1"));
+        cfg.initialInFlight = Integer.parseInt(prop.getProperty("scraper.initialInFlight",
+                String.valueOf(Math.min(cfg.threadPoolSize, cfg.maxInFlight))));
+        cfg.latencyTolerance = Double.parseDouble(prop.getProperty("scraper.latencyTolerance", "2.0"));
+
+        // Listing discovery
+        cfg.discoveryMode = prop.getProperty("scraper.discovery", "pages").toLowerCase();
+        cfg.discoveryPageParam = prop.getProperty("scraper.discovery.pageParam", "");
+        cfg.discoveryParallelism = Integer.parseInt(prop.getProperty("scraper.discovery.parallelism", "4"));
+
+        // Visited-URL set and URL canonicalization
+        cfg.visitedMode = prop.getProperty("scraper.visited", "exact").toLowerCase();
+        cfg.visitedExpected = Integer.parseInt(prop.getProperty("scraper.visited.expected", "100000"));
+        cfg.urlLowercasePath = Boolean.parseBoolean(prop.getProperty("scraper.url.lowercasePath", "false"));
+        for (String param : prop.getProperty("scraper.url.dropParams", "").split(",")) {
+            if (!param.isBlank()) cfg.urlDropParams.add(param.trim());
+        }
+
+        // Listing walker blocks once this many URLs are waiting for a worker
+        cfg.queueCapacity = Integer.parseInt(prop.getProperty("scraper.queueCapacity", String.valueOf(cfg.threadPoolSize * 4)));
+
+        // Diets and the Excel sheet holding each one's rules
+        cfg.multiDiet = Boolean.parseBoolean(prop.getProperty("scraper.multiDiet", "false"));
+        cfg.scraperStartUrl = prop.getProperty("scraper.startUrl", cfg.scraperLCHFStartUrl);
+        cfg.rulesCacheDir = prop.getProperty("rules.cacheDir", "target/rules-cache");
+        for (String diet : prop.getProperty("diets", "LCHF,LFV").split(",")) {
+            diet = diet.trim();
+            if (diet.isEmpty()) continue;
+            String defaultSheet = diet.equals("LCHF") ? "Final list for LCHFElimination"
+                    : diet.equals("LFV") ? "Final list for LFV Elimination" : diet;
+            cfg.dietSheets.put(diet, prop.getProperty("diet." + diet + ".sheet", defaultSheet));
+        }
+
+        // Crawl frontier / resume
+        cfg.resume = Boolean.parseBoolean(prop.getProperty("scraper.resume", "false"));
+        cfg.checkpointIntervalMs = Long.parseLong(prop.getProperty("scraper.checkpointIntervalMs", "10000"));
+        cfg.maxAttempts = Integer.parseInt(prop.getProperty("scraper.maxAttempts", "3"));
+        cfg.incremental = Boolean.parseBoolean(prop.getProperty("scraper.incremental", "false"));
+        cfg.archiveDir = prop.getProperty("scraper.archiveDir", "");
+        cfg.reclassifyFetchSize = Integer.parseInt(prop.getProperty("scraper.reclassify.fetchSize", "2000"));
+
+        // Distributed crawl (COORDINATOR / WORKER modes)
+        cfg.distributedWorkerId = prop.getProperty("distributed.workerId", "");
+        if (cfg.distributedWorkerId.isBlank()) cfg.distributedWorkerId = WorkQueue.defaultWorkerId();
+        cfg.distributedBatchSize = Integer.parseInt(prop.getProperty("distributed.batchSize", "10"));
+        cfg.distributedLeaseMs = Long.parseLong(prop.getProperty("distributed.leaseSeconds", "120")) * 1000;
+        cfg.distributedPollMs = Long.parseLong(prop.getProperty("distributed.pollMillis", "2000"));
+        cfg.distributedWait = Boolean.parseBoolean(prop.getProperty("distributed.waitForWorkers", "true"));
+
+        // Metrics
+        cfg.metricsPort = Integer.parseInt(prop.getProperty("metrics.port", "0"));
+        cfg.metricsSummaryFile = prop.getProperty("metrics.summaryFile", "target/metrics-summary.json");
 
         return cfg;
     }
+
+    // Start URL for a single-diet crawl
+    public String startUrlFor(String diet) {
+        if (diet.equals("LCHF")) return scraperLCHFStartUrl;
+        if (diet.equals("LFV")) return scraperLFVStartUrl;
+        return scraperStartUrl;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,219 @@
+package commons;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Persistent crawl frontier: the state of every recipe URL in a crawl plus the listing page position,
+// checkpointed to Postgres so scraper.resume=true can continue an interrupted crawl.
+// State changes are kept in memory and written in one transaction per checkpoint.
+// A URL whose recipe rows DbManager gave up writing goes back to PENDING, even if already marked DONE.
+public class CrawlFrontier implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(CrawlFrontier.class.getName());
+
+    public enum State { PENDING, IN_FLIGHT, DONE, FAILED }
+
+    private final DbManager db;
+    private final RecipeWriteQueue writeQueue;
+    private final String crawlKey;
+
+    // Everything known about this crawl, and the changes not yet checkpointed
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, State> dirty = new ConcurrentHashMap<>();
+    private volatile Checkpoint listing = new Checkpoint(1, null, false);
+    private volatile boolean listingDirty = false;
+
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+    private final ScheduledExecutorService checkpointer;
+    private final Consumer<String> unwrittenListener = this::requeueUnwritten;
+
+    // Other buffers a DONE state depends on, e.g. a WorkQueue's URLs not yet inserted
+    public interface CheckpointFlush {
+        void flush() throws SQLException, InterruptedException;
+    }
+
+    private final List<CheckpointFlush> checkpointFlushes = new CopyOnWriteArrayList<>();
+
+    public CrawlFrontier(DbManager db, RecipeWriteQueue writeQueue, String crawlKey, long checkpointIntervalMs) {
+        this.db = db;
+        this.writeQueue = writeQueue;
+        this.crawlKey = crawlKey;
+        checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "frontier-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, checkpointIntervalMs, checkpointIntervalMs, TimeUnit.MILLISECONDS);
+        db.addWriteFailureListener(unwrittenListener);
+    }
+
+    // Fresh crawl: forget any earlier state for this crawl key
+    public void reset() throws SQLException {
+        db.resetFrontier(crawlKey);
+        entries.clear();
+        dirty.clear();
+        listing = new Checkpoint(1, null, false);
+    }
+
+    // Resume: reload the last checkpoint for this crawl key
+    public void load() throws SQLException {
+        entries.putAll(db.loadFrontier(crawlKey));
+        Checkpoint saved = db.loadCheckpoint(crawlKey);
+        if (saved != null) listing = saved;
+        log.info("[" + crawlKey + "] Resuming: " + entries.size() + " known URLs, listing page " + listing.listingPage
+                + (listing.listingFinished ? " (listing finished)" : ""));
+    }
+
+    public Set<String> knownUrls() {
+        return entries.keySet();
+    }
+
+    // URLs to requeue on resume: never finished, or failed fewer than maxAttempts times
+    public List<String> unfinishedUrls(int maxAttempts) {
+        List<String> urls = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            boolean retry = entry.state == State.PENDING || entry.state == State.IN_FLIGHT
+                    || (entry.state == State.FAILED && entry.attempts < maxAttempts);
+            if (retry) urls.add(e.getKey());
+        }
+        return urls;
+    }
+
+    public void markPending(String url) {
+        mark(url, State.PENDING);
+    }
+
+    public void markInFlight(String url) {
+        mark(url, State.IN_FLIGHT);
+    }
+
+    public void markDone(String url) {
+        mark(url, State.DONE);
+    }
+
+    public void markFailed(String url) {
+        mark(url, State.FAILED);
+    }
+
+    // One atomic step per URL: the entry and its pending checkpoint change never disagree. A URL never
+    // moves backwards: DONE is final, and a URL a worker already took is not put back to PENDING.
+    private void mark(String url, State state) {
+        entries.compute(url, (k, old) -> {
+            if (old != null && (old.state == State.DONE
+                    || (old.state == State.IN_FLIGHT && state == State.PENDING))) {
+                return old;
+            }
+            dirty.put(url, state);
+            return new Entry(state, old == null ? 0 : old.attempts + (state == State.FAILED ? 1 : 0));
+        });
+    }
+
+    // DbManager could not write this URL's rows: scrape it again on resume. Other crawls' URLs are ignored.
+    private void requeueUnwritten(String url) {
+        Entry requeued = entries.computeIfPresent(url, (k, e) -> {
+            dirty.put(url, State.PENDING);
+            return new Entry(State.PENDING, e.attempts);
+        });
+        if (requeued == null) return;
+        log.warn("[" + crawlKey + "] " + url + " was not written, back to PENDING");
+    }
+
+    public Checkpoint getListingPosition() {
+        return listing;
+    }
+
+    public void recordListingPosition(int page, String url) {
+        listing = new Checkpoint(page, url, false);
+        listingDirty = true;
+    }
+
+    public void markListingFinished() {
+        listing = new Checkpoint(listing.listingPage, listing.listingUrl, true);
+        listingDirty = true;
+    }
+
+    // Flushed after the write-behind queue on every checkpoint, before the snapshot is saved
+    public void addCheckpointFlush(CheckpointFlush flush) {
+        checkpointFlushes.add(flush);
+    }
+
+    // Recipes marked DONE must be in their tables before the checkpoint says so,
+    // so the write-behind queue is flushed between taking the snapshot and saving it
+    public void checkpoint() throws SQLException, InterruptedException {
+        checkpointLock.lock();
+        try {
+            Map<String, State> snapshot = new HashMap<>();
+            for (String url : new ArrayList<>(dirty.keySet())) {
+                State state = dirty.remove(url);
+                if (state != null) snapshot.put(url, state);
+            }
+            Checkpoint position = listingDirty ? listing : null;
+            listingDirty = false;
+            if (snapshot.isEmpty() && position == null) return;
+
+            try {
+                writeQueue.flush();
+                for (CheckpointFlush flush : checkpointFlushes) flush.flush();
+                // Rows that flush gave up on must not be saved as DONE
+                for (String url : snapshot.keySet()) {
+                    if (dirty.get(url) == State.PENDING) snapshot.put(url, State.PENDING);
+                }
+                db.saveFrontier(crawlKey, snapshot, position);
+            } catch (SQLException | InterruptedException e) {
+                // Keep the changes for the next checkpoint, unless a newer state arrived meanwhile
+                snapshot.forEach(dirty::putIfAbsent);
+                if (position != null) listingDirty = true;
+                throw e;
+            }
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            log.warn("[" + crawlKey + "] Checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    // Final checkpoint
+    @Override
+    public void close() throws SQLException, InterruptedException {
+        checkpointer.shutdown();
+        try {
+            checkpoint();
+        } finally {
+            db.removeWriteFailureListener(unwrittenListener);
+        }
+    }
+
+    public static class Entry {
+        public final State state;
+        public final int attempts;
+
+        public Entry(State state, int attempts) {
+            this.state = state;
+            this.attempts = attempts;
+        }
+    }
+
+    public static class Checkpoint {
+        public final int listingPage;
+        public final String listingUrl;
+        public final boolean listingFinished;
+
+        public Checkpoint(int listingPage, String listingUrl, boolean listingFinished) {
+            this.listingPage = listingPage;
+            this.listingUrl = listingUrl;
+            this.listingFinished = listingFinished;
+        }
+    }
+}
@@ -1,21 +1,116 @@
 package commons;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import utilities.Metrics;
+
 import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 
 public class DbManager {
-    private static Connection conn;
+    private static final Logger log = LogManager.getLogger(DbManager.class.getName());
+
+    // Canonical store of every scraped recipe, independent of any diet's rules. Ingredient lines are
+    // joined with newlines here (", " in the diet tables) so a reclassification sees the original lines.
+    public static final String RAW_TABLE = "recipes_raw";
+
+    private static final String COLUMNS =
+            "recipe_name, recipe_category, food_category, ingredients, preparation_time, cooking_time, tag, no_of_servings, cuisine_category, recipe_description, preparation_method, nutrient_values, recipe_url, content_hash, etag, last_modified" +
+            ", ingredient_lines, ingredient_terms, prep_minutes, cook_minutes, servings, energy_kcal, protein_g, carbs_g, fat_g, fiber_g";
+    private static final int COLUMN_COUNT = COLUMNS.split(",").length;
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    // ---------------- Connection pool ----------------
+    // Scraper threads borrow a connection per call instead of sharing one
+    private final BlockingQueue<Connection> pool;
+
+    // ---------------- Batched writes ----------------
+    // Rows are buffered and written by one writer connection, one transaction per flush. A failed batch
+    // is retried with backoff, then row by row; rows that still fail are reported to the listeners
+    // so whoever marked their URLs done can take that back.
+    private static final int FLUSH_ATTEMPTS = 3;
+    private static final long FLUSH_BACKOFF_MS = 200;
+
+    private final int batchSize;
+    private final ReentrantLock bufferLock = new ReentrantLock();
+    private List<BufferedRow> pending = new ArrayList<>();
+    private final List<Consumer<String>> writeFailureListeners = new CopyOnWriteArrayList<>();
+    private final List<CommitListener> commitListeners = new CopyOnWriteArrayList<>();
+
+    public interface CommitListener {
+        // rows committed by one flush and the time the flush spent writing them
+        void committed(int rows, long nanos);
+    }
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private Connection writerConn;
+    private final Map<String, Map<String, PreparedStatement>> writerStatements = new HashMap<>(); // table -> SQL -> statement
+    private final ScheduledExecutorService flusher;
 
     public DbManager(ConfigReader cfg) throws SQLException {
-        String url = "jdbc:postgresql://" + cfg.dbHost + ":" + cfg.dbPort + "/" + cfg.dbName;
-        conn = DriverManager.getConnection(url, cfg.dbUser, cfg.dbPassword);
+        // reWriteBatchedInserts lets the driver send a JDBC batch as multi-row INSERTs
+        url = "jdbc:postgresql://" + cfg.dbHost + ":" + cfg.dbPort + "/" + cfg.dbName + "?reWriteBatchedInserts=true";
+        user = cfg.dbUser;
+        password = cfg.dbPassword;
+        batchSize = cfg.dbBatchSize;
+
+        pool = new ArrayBlockingQueue<>(cfg.dbPoolSize);
+        for (int i = 0; i < cfg.dbPoolSize; i++) {
+            pool.add(openConnection());
+        }
+        writerConn = openConnection();
+        writerConn.setAutoCommit(false);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, cfg.dbFlushIntervalMs, cfg.dbFlushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private interface SqlWork<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private <T> T withConnection(SqlWork<T> work) throws SQLException {
+        Connection conn;
+        try {
+            conn = pool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            if (!conn.isValid(2)) {
+                try { conn.close(); } catch (SQLException ignored) {}
+                conn = openConnection();
+            }
+            return work.run(conn);
+        } finally {
+            pool.add(conn);
+        }
     }
 
     public void dropTableIfExists(String tableName) throws SQLException {
         String sql = "DROP TABLE IF EXISTS " + tableName;
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-        }
+        withConnection(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                return stmt.execute(sql);
+            }
+        });
+        forgetStatements(tableName);
     }
 
     // Create tables with full schema
@@ -34,61 +129,772 @@ public class DbManager {
                 "recipe_description TEXT," +
                 "preparation_method TEXT," +
                 "nutrient_values TEXT," +
-                "recipe_url TEXT UNIQUE" +
+                "recipe_url TEXT UNIQUE," +
+                "content_hash TEXT," +
+                "etag TEXT," +
+                "last_modified TEXT," +
+                "last_checked TIMESTAMP DEFAULT now()" +
                 ")";
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
+        // Tables kept from before the fingerprint and typed columns existed
+        String upgrade = "ALTER TABLE " + tableName +
+                " ADD COLUMN IF NOT EXISTS content_hash TEXT," +
+                " ADD COLUMN IF NOT EXISTS etag TEXT," +
+                " ADD COLUMN IF NOT EXISTS last_modified TEXT," +
+                " ADD COLUMN IF NOT EXISTS last_checked TIMESTAMP DEFAULT now()," +
+                TYPED_COLUMNS;
+        withConnection(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(sql);
+                stmt.execute(upgrade);
+                for (String index : indexes(tableName)) stmt.execute(index);
+                return null;
+            }
+        });
+    }
+
+    // ---------------- Typed columns ----------------
+    // Parsed at ingest (see RecipeValues) so meal-planning queries filter on indexed values instead of
+    // LIKE scans over the display text, e.g. "paneer but not rice, under 30 minutes":
+    //   WHERE ingredient_terms @> '{paneer}' AND NOT ingredient_terms && '{rice}' AND total_minutes <= 30
+    private static final String TYPED_COLUMNS =
+            " ADD COLUMN IF NOT EXISTS ingredient_lines TEXT[]," +
+            " ADD COLUMN IF NOT EXISTS ingredient_terms TEXT[]," +
+            " ADD COLUMN IF NOT EXISTS prep_minutes INT," +
+            " ADD COLUMN IF NOT EXISTS cook_minutes INT," +
+            " ADD COLUMN IF NOT EXISTS total_minutes INT GENERATED ALWAYS AS (coalesce(prep_minutes, 0) + coalesce(cook_minutes, 0)) STORED," +
+            " ADD COLUMN IF NOT EXISTS servings INT," +
+            " ADD COLUMN IF NOT EXISTS energy_kcal NUMERIC(8,2)," +
+            " ADD COLUMN IF NOT EXISTS protein_g NUMERIC(8,2)," +
+            " ADD COLUMN IF NOT EXISTS carbs_g NUMERIC(8,2)," +
+            " ADD COLUMN IF NOT EXISTS fat_g NUMERIC(8,2)," +
+            " ADD COLUMN IF NOT EXISTS fiber_g NUMERIC(8,2)";
+
+    private static List<String> indexes(String tableName) {
+        return List.of(
+                "CREATE INDEX IF NOT EXISTS " + tableName + "_ingredient_terms_gin ON " + tableName + " USING GIN (ingredient_terms)",
+                "CREATE INDEX IF NOT EXISTS " + tableName + "_total_minutes_idx ON " + tableName + " (total_minutes)",
+                "CREATE INDEX IF NOT EXISTS " + tableName + "_energy_kcal_idx ON " + tableName + " (energy_kcal)");
+    }
+
+    // URLs of the recipes in a table whose ingredients contain every term of withTerms and none of
+    // withoutTerms (single words, as in ingredient_terms); answered from the GIN index
+    public List<String> findRecipeUrls(String tableName, Collection<String> withTerms, Collection<String> withoutTerms) throws SQLException {
+        String sql = "SELECT recipe_url FROM " + tableName +
+                " WHERE ingredient_terms @> ? AND NOT ingredient_terms && ? ORDER BY recipe_url";
+        return withConnection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setArray(1, conn.createArrayOf("text", withTerms.stream().map(String::toLowerCase).toArray()));
+                ps.setArray(2, conn.createArrayOf("text", withoutTerms.stream().map(String::toLowerCase).toArray()));
+                List<String> urls = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) urls.add(rs.getString(1));
+                }
+                return urls;
+            }
+        });
+    }
+
+    // Inserts a new recipe, or rewrites the stored row only when its content hash changed or it predates
+    // the typed columns (ingredient_terms is never NULL once written, an empty recipe gets '{}')
+    private static String upsertSql(String tableName) {
+        StringBuilder set = new StringBuilder();
+        for (String column : COLUMNS.split(",\\s*")) {
+            if (column.equals("recipe_url")) continue;
+            set.append(' ').append(column).append(" = EXCLUDED.").append(column).append(',');
+        }
+        return "INSERT INTO " + tableName + " (" + COLUMNS + ", last_checked)" +
+                " VALUES (" + "?, ".repeat(COLUMN_COUNT) + "now())" +
+                " ON CONFLICT (recipe_url) DO UPDATE SET" + set + " last_checked = now()" +
+                " WHERE " + tableName + ".content_hash IS DISTINCT FROM EXCLUDED.content_hash" +
+                " OR " + tableName + ".ingredient_terms IS NULL";
+    }
+
+    // Fingerprints of every stored recipe in the given tables, keyed by URL. Recipes with a row that
+    // predates the typed columns are left out, so an incremental crawl rescrapes and backfills them.
+    public Map<String, RecipeFingerprint> loadFingerprints(List<String> tableNames) throws SQLException {
+        Map<String, RecipeFingerprint> fingerprints = new HashMap<>();
+        Set<String> untyped = new HashSet<>();
+        for (String tableName : tableNames) {
+            String sql = "SELECT recipe_url, content_hash, etag, last_modified, ingredient_terms IS NULL FROM " + tableName;
+            withConnection(conn -> {
+                try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        fingerprints.put(rs.getString(1), new RecipeFingerprint(rs.getString(2), rs.getString(3), rs.getString(4)));
+                        if (rs.getBoolean(5)) untyped.add(rs.getString(1));
+                    }
+                }
+                return null;
+            });
+        }
+        if (!untyped.isEmpty()) {
+            log.info(untyped.size() + " stored recipes have no typed columns yet and will be rewritten");
+            fingerprints.keySet().removeAll(untyped);
         }
+        return fingerprints;
     }
 
+    // Single-row insert, written immediately in its own autocommit transaction
     public void insertRecipe(String tableName, Recipe recipe) throws SQLException {
-        String sql = "INSERT INTO " + tableName +
-                " (recipe_name, recipe_category, food_category, ingredients, preparation_time, cooking_time, tag, no_of_servings, cuisine_category, recipe_description, preparation_method, nutrient_values, recipe_url)" +
-                " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (recipe_url) DO NOTHING";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, recipe.Recipe_Name);
-            ps.setString(2, recipe.Recipe_Category);
-            ps.setString(3, recipe.Food_Category);
-            ps.setString(4, String.join(", ", recipe.Ingredients));
-            ps.setString(5, recipe.Preparation_Time);
-            ps.setString(6, recipe.Cooking_Time);
-            ps.setString(7, recipe.Tag);
-            ps.setString(8, recipe.No_of_servings);
-            ps.setString(9, recipe.Cuisine_category);
-            ps.setString(10, recipe.Recipe_Description);
-            ps.setString(11, recipe.Preparation_method);
-            ps.setString(12, recipe.Nutrient_values);
-            ps.setString(13, recipe.Recipe_URL);
-            ps.executeUpdate();
+        long start = System.nanoTime();
+        String sql = upsertSql(tableName);
+        withConnection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                bindRecipe(ps, recipe, RAW_TABLE.equals(tableName));
+                return ps.executeUpdate();
+            }
+        });
+        Metrics.timer("scraper_db_insert_seconds", "Time to write recipes to Postgres", "mode", "single").recordSince(start);
+        Metrics.counter("scraper_db_rows_written_total", "Recipe rows sent to Postgres").inc();
+    }
+
+    // Buffered insert: the row is written by the next flush (batch full, flush interval, flush() or close())
+    public void queueRecipe(String tableName, Recipe recipe) throws SQLException {
+        queueRecipe(tableName, recipe, null);
+    }
+
+    // staleTable, when set, loses its row for the same URL in the same transaction
+    // (a re-crawled recipe that moved from a diet's add table to its elimination table, or back)
+    public void queueRecipe(String tableName, Recipe recipe, String staleTable) throws SQLException {
+        boolean full;
+        bufferLock.lock();
+        try {
+            pending.add(new BufferedRow(tableName, recipe, staleTable));
+            full = pending.size() >= batchSize;
+        } finally {
+            bufferLock.unlock();
+        }
+        if (full) flush();
+    }
+
+    // Rows waiting in the batch buffer for the next flush
+    public int getPendingRows() {
+        bufferLock.lock();
+        try {
+            return pending.size();
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    // Called with the recipe URL of every buffered row that could not be written, from the flushing thread
+    public void addWriteFailureListener(Consumer<String> listener) {
+        writeFailureListeners.add(listener);
+    }
+
+    public void removeWriteFailureListener(Consumer<String> listener) {
+        writeFailureListeners.remove(listener);
+    }
+
+    public void addCommitListener(CommitListener listener) {
+        commitListeners.add(listener);
+    }
+
+    // Writes every buffered row as one JDBC batch per table inside a single transaction.
+    // Returns the number of rows committed; rows given up on go to the write failure listeners.
+    public int flush() throws SQLException {
+        flushLock.lock();
+        try {
+            List<BufferedRow> rows;
+            bufferLock.lock();
+            try {
+                if (pending.isEmpty()) return 0;
+                rows = latestPerUrl(pending);
+                pending = new ArrayList<>();
+            } finally {
+                bufferLock.unlock();
+            }
+
+            long start = System.nanoTime();
+            for (int attempt = 1; attempt <= FLUSH_ATTEMPTS; attempt++) {
+                try {
+                    writeRows(rows);
+                    Metrics.timer("scraper_db_insert_seconds", "Time to write recipes to Postgres", "mode", "batch").recordSince(start);
+                    Metrics.counter("scraper_db_rows_written_total", "Recipe rows sent to Postgres").add(rows.size());
+                    notifyCommitted(rows.size(), start);
+                    return rows.size();
+                } catch (SQLException | RuntimeException e) {
+                    Metrics.counter("scraper_db_batches_failed_total", "Batches rolled back").inc();
+                    log.warn("Batch of " + rows.size() + " rows rolled back (attempt " + attempt + "/" + FLUSH_ATTEMPTS + "): " + e.getMessage());
+                }
+                if (attempt < FLUSH_ATTEMPTS && !backoff(attempt)) break;
+            }
+
+            // Still failing: one transaction per row, so a single bad row doesn't take the others down
+            int written = 0;
+            Set<String> failedUrls = new LinkedHashSet<>();
+            for (BufferedRow row : rows) {
+                try {
+                    writeRows(List.of(row));
+                    written++;
+                } catch (SQLException | RuntimeException e) {
+                    failedUrls.add(row.recipe.Recipe_URL);
+                    log.warn("Could not write " + row.recipe.Recipe_URL + " to " + row.tableName + ": " + e.getMessage());
+                }
+            }
+            Metrics.counter("scraper_db_rows_written_total", "Recipe rows sent to Postgres").add(written);
+            if (written > 0) notifyCommitted(written, start);
+            Metrics.counter("scraper_db_rows_failed_total", "Recipe rows given up on after retries").add(rows.size() - written);
+            for (String failedUrl : failedUrls) {
+                for (Consumer<String> listener : writeFailureListeners) listener.accept(failedUrl);
+            }
+            return written;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void notifyCommitted(int rows, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        for (CommitListener listener : commitListeners) listener.committed(rows, nanos);
+    }
+
+    // FLUSH_BACKOFF_MS, doubling per attempt; false when interrupted (skip straight to row by row)
+    private static boolean backoff(int attempt) {
+        try {
+            Thread.sleep(FLUSH_BACKOFF_MS << (attempt - 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // One transaction: stale rows deleted, then one JDBC batch per table (call with flushLock held)
+    private void writeRows(List<BufferedRow> rows) throws SQLException {
+        if (writerConn == null || !writerConn.isValid(2)) {
+            closeStatements();
+            writerConn = openConnection();
+            writerConn.setAutoCommit(false);
+        }
+        Map<String, List<String>> deletes = new LinkedHashMap<>();
+        Map<String, List<Recipe>> upserts = new LinkedHashMap<>();
+        for (BufferedRow row : rows) {
+            if (row.staleTable != null) deletes.computeIfAbsent(row.staleTable, t -> new ArrayList<>()).add(row.recipe.Recipe_URL);
+            upserts.computeIfAbsent(row.tableName, t -> new ArrayList<>()).add(row.recipe);
+        }
+        try {
+            for (Map.Entry<String, List<String>> e : deletes.entrySet()) {
+                PreparedStatement ps = statement(e.getKey(), "DELETE FROM " + e.getKey() + " WHERE recipe_url = ?");
+                for (String recipeUrl : e.getValue()) {
+                    ps.setString(1, recipeUrl);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            for (Map.Entry<String, List<Recipe>> e : upserts.entrySet()) {
+                PreparedStatement ps = statement(e.getKey(), upsertSql(e.getKey()));
+                boolean raw = RAW_TABLE.equals(e.getKey());
+                for (Recipe recipe : e.getValue()) {
+                    bindRecipe(ps, recipe, raw);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            writerConn.commit();
+        } catch (SQLException | RuntimeException e) {
+            // RuntimeException: a row that cannot be bound (bad value), the batch is rolled back like a SQL failure
+            try {
+                writerConn.rollback();
+            } catch (SQLException ignored) {
+                // connection is gone, reopened on the next attempt
+            }
+            closeStatements(); // drop any half-built batch with them
+            throw e;
         }
     }
 
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | RuntimeException e) {
+            // Never let an exception escape: the executor would cancel every later scheduled flush
+            log.warn("Scheduled flush failed: " + e.getMessage());
+        }
+    }
+
+    // For rows that never reached the batch buffer (see RecipeWriteQueue), so they are retried like flush failures
+    public void reportWriteFailure(String recipeUrl) {
+        Metrics.counter("scraper_db_rows_failed_total", "Recipe rows given up on after retries").inc();
+        for (Consumer<String> listener : writeFailureListeners) listener.accept(recipeUrl);
+    }
+
+    static class BufferedRow {
+        final String tableName;
+        final Recipe recipe;
+        final String staleTable;
+
+        BufferedRow(String tableName, Recipe recipe, String staleTable) {
+            this.tableName = tableName;
+            this.recipe = recipe;
+            this.staleTable = staleTable;
+        }
+    }
+
+    // Prepared once per SQL text on the writer connection and reused by every flush (call with flushLock held).
+    // Kept per table, so dropping a table closes exactly its statements.
+    private PreparedStatement statement(String tableName, String sql) throws SQLException {
+        Map<String, PreparedStatement> byTable = writerStatements.computeIfAbsent(tableName, t -> new HashMap<>());
+        PreparedStatement ps = byTable.get(sql);
+        if (ps == null) {
+            ps = writerConn.prepareStatement(sql);
+            byTable.put(sql, ps);
+        }
+        return ps;
+    }
+
+    private void forgetStatements(String tableName) {
+        flushLock.lock();
+        try {
+            Map<String, PreparedStatement> byTable = writerStatements.remove(tableName);
+            if (byTable == null) return;
+            for (PreparedStatement ps : byTable.values()) {
+                try { ps.close(); } catch (SQLException ignored) {}
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void closeStatements() {
+        for (Map<String, PreparedStatement> byTable : writerStatements.values()) {
+            for (PreparedStatement ps : byTable.values()) {
+                try { ps.close(); } catch (SQLException ignored) {}
+            }
+        }
+        writerStatements.clear();
+    }
+
+    // ON CONFLICT DO UPDATE can't touch the same row twice in one statement, so a batch keeps only the
+    // latest row per table and URL. A row that moves its recipe out of a table (staleTable) also drops
+    // any earlier row for that table, the delete then removes what is stored.
+    static List<BufferedRow> latestPerUrl(List<BufferedRow> rows) {
+        Map<String, BufferedRow> latest = new LinkedHashMap<>();
+        for (BufferedRow row : rows) {
+            String url = row.recipe.Recipe_URL;
+            if (row.staleTable != null) latest.remove(row.staleTable + "\n" + url);
+            latest.remove(row.tableName + "\n" + url); // re-inserted last, in arrival order
+            latest.put(row.tableName + "\n" + url, row);
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    private static void bindRecipe(PreparedStatement ps, Recipe recipe, boolean raw) throws SQLException {
+        ps.setString(1, recipe.Recipe_Name);
+        ps.setString(2, recipe.Recipe_Category);
+        ps.setString(3, recipe.Food_Category);
+        ps.setString(4, recipe.Ingredients == null ? "" : String.join(raw ? "\n" : ", ", recipe.Ingredients));
+        ps.setString(5, recipe.Preparation_Time);
+        ps.setString(6, recipe.Cooking_Time);
+        ps.setString(7, recipe.Tag);
+        ps.setString(8, recipe.No_of_servings);
+        ps.setString(9, recipe.Cuisine_category);
+        ps.setString(10, recipe.Recipe_Description);
+        ps.setString(11, recipe.Preparation_method);
+        ps.setString(12, recipe.Nutrient_values);
+        ps.setString(13, recipe.Recipe_URL);
+        ps.setString(14, recipe.Content_Hash.isEmpty() ? RecipeFingerprint.contentHash(recipe) : recipe.Content_Hash);
+        ps.setString(15, recipe.ETag);
+        ps.setString(16, recipe.Last_Modified);
+
+        RecipeValues values = new RecipeValues(recipe);
+        Connection conn = ps.getConnection();
+        ps.setArray(17, conn.createArrayOf("text", values.ingredientLines));
+        ps.setArray(18, conn.createArrayOf("text", values.ingredientTerms));
+        ps.setObject(19, values.prepMinutes, Types.INTEGER);
+        ps.setObject(20, values.cookMinutes, Types.INTEGER);
+        ps.setObject(21, values.servings, Types.INTEGER);
+        ps.setBigDecimal(22, values.energyKcal);
+        ps.setBigDecimal(23, values.proteinG);
+        ps.setBigDecimal(24, values.carbsG);
+        ps.setBigDecimal(25, values.fatG);
+        ps.setBigDecimal(26, values.fiberG);
+    }
+
     public boolean recipeExists(String tableName, String recipeUrl) throws SQLException {
         String sql = "SELECT 1 FROM " + tableName + " WHERE recipe_url = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, recipeUrl);
-            ResultSet rs = ps.executeQuery();
-            return rs.next();
-        }
+        return withConnection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, recipeUrl);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next();
+                }
+            }
+        });
     }
-    
+
+    // Flushes buffered rows, then closes the writer and every pooled connection
     public void close() throws SQLException {
-        if (conn != null) conn.close();
+        flusher.shutdown();
+        try {
+            flush();
+        } finally {
+            flushLock.lock();
+            try {
+                closeStatements();
+                if (writerConn != null) writerConn.close();
+            } finally {
+                flushLock.unlock();
+            }
+            Connection conn;
+            while ((conn = pool.poll()) != null) {
+                try { conn.close(); } catch (SQLException ignored) {}
+            }
+        }
     }
 
+    // Flushes first so the count includes every row queued so far
     public int getRowCount(String tableName) throws SQLException {
+        flush();
         String sql = "SELECT COUNT(*) FROM " + tableName;
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            rs.next();
-            return rs.getInt(1);
-        }
+        return withConnection(conn -> {
+            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        });
+    }
+    // ---------------- Reclassification ----------------
+    public interface RawRecipeSink {
+        void accept(String recipeUrl, String ingredientLines);
+    }
+
+    // Streams (url, newline-joined ingredients) of every canonical recipe through a server-side cursor,
+    // fetchSize rows per round trip, so the table never has to fit in memory
+    public long streamRawIngredients(int fetchSize, RawRecipeSink sink) throws SQLException {
+        String sql = "SELECT recipe_url, ingredients FROM " + RAW_TABLE;
+        return withConnection(conn -> {
+            // pgjdbc only uses a cursor inside a transaction
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(fetchSize);
+                long rows = 0;
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        sink.accept(rs.getString(1), rs.getString(2));
+                        rows++;
+                    }
+                }
+                conn.commit();
+                return rows;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        });
+    }
+
+    // Replaces a diet's two tables from the canonical table in one transaction: the recipes in addUrls
+    // go to addTable and every other one to eliminationTable. Rows are copied server side, only the
+    // URL list crosses the wire.
+    public int[] rewriteDietTables(String addTable, String eliminationTable, Collection<String> addUrls) throws SQLException {
+        // Same column list on both sides; ingredient lines go back to the diet tables' ", " form
+        String select = COLUMNS.replace("ingredients,", "replace(ingredients, E'\\n', ', '),");
+        String insertAdd = "INSERT INTO " + addTable + " (" + COLUMNS + ") SELECT " + select +
+                " FROM " + RAW_TABLE + " WHERE recipe_url = ANY(?)";
+        String insertElimination = "INSERT INTO " + eliminationTable + " (" + COLUMNS + ") SELECT " + select +
+                " FROM " + RAW_TABLE + " WHERE NOT (recipe_url = ANY(?))";
+        long start = System.nanoTime();
+        int[] rows = withConnection(conn -> {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement();
+                 PreparedStatement add = conn.prepareStatement(insertAdd);
+                 PreparedStatement elim = conn.prepareStatement(insertElimination)) {
+                stmt.execute("TRUNCATE " + addTable + ", " + eliminationTable);
+                Array urls = conn.createArrayOf("text", addUrls.toArray());
+                add.setArray(1, urls);
+                elim.setArray(1, urls);
+                int[] counts = {add.executeUpdate(), elim.executeUpdate()};
+                conn.commit();
+                return counts;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        });
+        Metrics.timer("scraper_db_insert_seconds", "Time to write recipes to Postgres", "mode", "rewrite").recordSince(start);
+        Metrics.counter("scraper_db_rows_written_total", "Recipe rows sent to Postgres").add(rows[0] + rows[1]);
+        return rows;
+    }
+
+    // ---------------- Crawl frontier ----------------
+    // Per-URL crawl state plus the listing position, so an interrupted crawl can resume
+    public void createFrontierTables() throws SQLException {
+        String frontier = "CREATE TABLE IF NOT EXISTS crawl_frontier (" +
+                "crawl_key TEXT NOT NULL," +
+                "recipe_url TEXT NOT NULL," +
+                "state TEXT NOT NULL," +
+                "attempts INT NOT NULL DEFAULT 0," +
+                "updated_at TIMESTAMP NOT NULL DEFAULT now()," +
+                "PRIMARY KEY (crawl_key, recipe_url)" +
+                ")";
+        String checkpoint = "CREATE TABLE IF NOT EXISTS crawl_checkpoint (" +
+                "crawl_key TEXT PRIMARY KEY," +
+                "listing_page INT NOT NULL," +
+                "listing_url TEXT," +
+                "listing_finished BOOLEAN NOT NULL DEFAULT false," +
+                "updated_at TIMESTAMP NOT NULL DEFAULT now()" +
+                ")";
+        withConnection(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(frontier);
+                return stmt.execute(checkpoint);
+            }
+        });
+    }
+
+    public void resetFrontier(String crawlKey) throws SQLException {
+        withConnection(conn -> {
+            try (PreparedStatement f = conn.prepareStatement("DELETE FROM crawl_frontier WHERE crawl_key = ?");
+                 PreparedStatement c = conn.prepareStatement("DELETE FROM crawl_checkpoint WHERE crawl_key = ?")) {
+                f.setString(1, crawlKey);
+                f.executeUpdate();
+                c.setString(1, crawlKey);
+                return c.executeUpdate();
+            }
+        });
+    }
+
+    public Map<String, CrawlFrontier.Entry> loadFrontier(String crawlKey) throws SQLException {
+        String sql = "SELECT recipe_url, state, attempts FROM crawl_frontier WHERE crawl_key = ?";
+        return withConnection(conn -> {
+            Map<String, CrawlFrontier.Entry> entries = new HashMap<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, crawlKey);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        entries.put(rs.getString(1),
+                                new CrawlFrontier.Entry(CrawlFrontier.State.valueOf(rs.getString(2)), rs.getInt(3)));
+                    }
+                }
+            }
+            return entries;
+        });
+    }
+
+    // Returns null when the crawl has no checkpoint yet
+    public CrawlFrontier.Checkpoint loadCheckpoint(String crawlKey) throws SQLException {
+        String sql = "SELECT listing_page, listing_url, listing_finished FROM crawl_checkpoint WHERE crawl_key = ?";
+        return withConnection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, crawlKey);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    return new CrawlFrontier.Checkpoint(rs.getInt(1), rs.getString(2), rs.getBoolean(3));
+                }
+            }
+        });
+    }
+
+    // Writes the URL state changes and the listing position in one transaction
+    public void saveFrontier(String crawlKey, Map<String, CrawlFrontier.State> changes,
+                             CrawlFrontier.Checkpoint checkpoint) throws SQLException {
+        String upsertUrl = "INSERT INTO crawl_frontier (crawl_key, recipe_url, state, attempts, updated_at)" +
+                " VALUES (?, ?, ?, ?, now()) ON CONFLICT (crawl_key, recipe_url) DO UPDATE" +
+                " SET state = EXCLUDED.state, attempts = crawl_frontier.attempts + EXCLUDED.attempts, updated_at = now()";
+        String upsertCheckpoint = "INSERT INTO crawl_checkpoint (crawl_key, listing_page, listing_url, listing_finished, updated_at)" +
+                " VALUES (?, ?, ?, ?, now()) ON CONFLICT (crawl_key) DO UPDATE" +
+                " SET listing_page = EXCLUDED.listing_page, listing_url = EXCLUDED.listing_url," +
+                " listing_finished = EXCLUDED.listing_finished, updated_at = now()";
+        withConnection(conn -> {
+            conn.setAutoCommit(false);
+            try (PreparedStatement urls = conn.prepareStatement(upsertUrl);
+                 PreparedStatement cp = conn.prepareStatement(upsertCheckpoint)) {
+                for (Map.Entry<String, CrawlFrontier.State> e : changes.entrySet()) {
+                    urls.setString(1, crawlKey);
+                    urls.setString(2, e.getKey());
+                    urls.setString(3, e.getValue().name());
+                    urls.setInt(4, e.getValue() == CrawlFrontier.State.FAILED ? 1 : 0);
+                    urls.addBatch();
+                }
+                urls.executeBatch();
+                if (checkpoint != null) {
+                    cp.setString(1, crawlKey);
+                    cp.setInt(2, checkpoint.listingPage);
+                    cp.setString(3, checkpoint.listingUrl);
+                    cp.setBoolean(4, checkpoint.listingFinished);
+                    cp.executeUpdate();
+                }
+                conn.commit();
+                return null;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        });
+    }
+
+    // ---------------- Distributed work queue ----------------
+    // Recipe URLs shared by a coordinator and any number of worker JVMs. A worker leases a batch of rows
+    // (lease_owner, lease_expires); rows whose lease ran out, because the worker died, can be claimed again.
+    public void createWorkQueueTable() throws SQLException {
+        String table = "CREATE TABLE IF NOT EXISTS crawl_queue (" +
+                "crawl_key TEXT NOT NULL," +
+                "recipe_url TEXT NOT NULL," +
+                "state TEXT NOT NULL DEFAULT 'PENDING'," +
+                "attempts INT NOT NULL DEFAULT 0," +
+                "lease_owner TEXT," +
+                "lease_expires TIMESTAMP," +
+                "enqueued_at TIMESTAMP NOT NULL DEFAULT now()," +
+                "updated_at TIMESTAMP NOT NULL DEFAULT now()," +
+                "PRIMARY KEY (crawl_key, recipe_url)" +
+                ")";
+        String index = "CREATE INDEX IF NOT EXISTS crawl_queue_claim_idx ON crawl_queue (crawl_key, state, lease_expires)";
+        // closed = the coordinator has queued every URL it will queue, so idle workers may exit
+        String status = "CREATE TABLE IF NOT EXISTS crawl_queue_status (" +
+                "crawl_key TEXT PRIMARY KEY," +
+                "closed BOOLEAN NOT NULL DEFAULT false," +
+                "updated_at TIMESTAMP NOT NULL DEFAULT now()" +
+                ")";
+        withConnection(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(table);
+                stmt.execute(index);
+                return stmt.execute(status);
+            }
+        });
+    }
+
+    public void resetWorkQueue(String crawlKey) throws SQLException {
+        withConnection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM crawl_queue WHERE crawl_key = ?")) {
+                ps.setString(1, crawlKey);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    public void setWorkQueueClosed(String crawlKey, boolean closed) throws SQLException {
+        String sql = "INSERT INTO crawl_queue_status (crawl_key, closed, updated_at) VALUES (?, ?, now())" +
+                " ON CONFLICT (crawl_key) DO UPDATE SET closed = EXCLUDED.closed, updated_at = now()";
+        withConnection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, crawlKey);
+                ps.setBoolean(2, closed);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    public boolean isWorkQueueClosed(String crawlKey) throws SQLException {
+        return withConnection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT closed FROM crawl_queue_status WHERE crawl_key = ?")) {
+                ps.setString(1, crawlKey);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() && rs.getBoolean(1);
+                }
+            }
+        });
+    }
+
+    // URLs already in the queue (from this or any other coordinator) are left as they are
+    public int enqueueWork(String crawlKey, Collection<String> urls) throws SQLException {
+        String sql = "INSERT INTO crawl_queue (crawl_key, recipe_url) VALUES (?, ?) ON CONFLICT DO NOTHING";
+        return withConnection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (String url : urls) {
+                    ps.setString(1, crawlKey);
+                    ps.setString(2, url);
+                    ps.addBatch();
+                }
+                int added = 0;
+                for (int n : ps.executeBatch()) added += Math.max(n, 0);
+                return added;
+            }
+        });
+    }
+
+    // Leases up to batchSize claimable rows to workerId. SKIP LOCKED lets concurrent workers pick
+    // disjoint rows without waiting on each other; rows out of attempts are never claimed.
+    public List<String> claimWork(String crawlKey, String workerId, int batchSize, long leaseMillis, int maxAttempts) throws SQLException {
+        String sql = "UPDATE crawl_queue q SET state = 'IN_FLIGHT', lease_owner = ?, attempts = q.attempts + 1," +
+                " lease_expires = now() + ? * interval '1 millisecond', updated_at = now()" +
+                " FROM (SELECT crawl_key, recipe_url FROM crawl_queue" +
+                "       WHERE crawl_key = ? AND attempts < ?" +
+                "         AND (state = 'PENDING' OR (state = 'IN_FLIGHT' AND lease_expires < now()))" +
+                "       ORDER BY enqueued_at LIMIT ? FOR UPDATE SKIP LOCKED) c" +
+                " WHERE q.crawl_key = c.crawl_key AND q.recipe_url = c.recipe_url" +
+                " RETURNING q.recipe_url";
+        return withConnection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, workerId);
+                ps.setLong(2, leaseMillis);
+                ps.setString(3, crawlKey);
+                ps.setInt(4, maxAttempts);
+                ps.setInt(5, batchSize);
+                List<String> urls = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) urls.add(rs.getString(1));
+                }
+                return urls;
+            }
+        });
+    }
+
+    // Heartbeat: pushes out the lease of every row this worker still holds
+    public int extendLeases(String crawlKey, String workerId, long leaseMillis) throws SQLException {
+        String sql = "UPDATE crawl_queue SET lease_expires = now() + ? * interval '1 millisecond'" +
+                " WHERE crawl_key = ? AND lease_owner = ? AND state = 'IN_FLIGHT'";
+        return withConnection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, leaseMillis);
+                ps.setString(2, crawlKey);
+                ps.setString(3, workerId);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    // done = DONE; otherwise back to PENDING for another attempt, or FAILED once out of attempts.
+    // Only applies to rows workerId still holds, a reclaimed row belongs to its new owner.
+    public void finishWork(String crawlKey, String workerId, Collection<String> urls, boolean done, int maxAttempts) throws SQLException {
+        String sql = "UPDATE crawl_queue SET lease_owner = NULL, lease_expires = NULL, updated_at = now()," +
+                " state = CASE WHEN ? THEN 'DONE' WHEN attempts < ? THEN 'PENDING' ELSE 'FAILED' END" +
+                " WHERE crawl_key = ? AND recipe_url = ? AND lease_owner = ? AND state = 'IN_FLIGHT'";
+        withConnection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (String url : urls) {
+                    ps.setBoolean(1, done);
+                    ps.setInt(2, maxAttempts);
+                    ps.setString(3, crawlKey);
+                    ps.setString(4, url);
+                    ps.setString(5, workerId);
+                    ps.addBatch();
+                }
+                return ps.executeBatch();
+            }
+        });
+    }
+
+    // Rows per state as a worker sees them: an expired lease is PENDING again, or FAILED once out of attempts
+    public Map<String, Integer> workCounts(String crawlKey, int maxAttempts) throws SQLException {
+        String sql = "SELECT CASE WHEN state = 'IN_FLIGHT' AND lease_expires >= now() THEN 'IN_FLIGHT'" +
+                "            WHEN state IN ('PENDING', 'IN_FLIGHT') THEN CASE WHEN attempts < ? THEN 'PENDING' ELSE 'FAILED' END" +
+                "            ELSE state END, count(*)" +
+                " FROM crawl_queue WHERE crawl_key = ? GROUP BY 1";
+        return withConnection(conn -> {
+            Map<String, Integer> counts = new HashMap<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, maxAttempts);
+                ps.setString(2, crawlKey);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) counts.merge(rs.getString(1), rs.getInt(2), Integer::sum);
+                }
+            }
+            return counts;
+        });
     }
+
     // Drop and create table in one method
     public void resetTable(String tableName) throws SQLException {
         dropTableIfExists(tableName);
         createTableIfNotExists(tableName);
     }
-    
-    
+
+
 }
@@ -1,78 +1,269 @@
 package commons;
 
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
-import java.io.IOException;
-import java.io.InputStream;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 public class ExcelUtils {
+    private static final Logger log = LogManager.getLogger(ExcelUtils.class.getName());
 
     private static String ExcelPath = "TestData/IngredientsAndComorbidities-ScrapperHackathon_Team2_RR.xlsx";
 
-    public static List<Map<String, String>> getData(String sheetName) throws IOException {
-        List<Map<String, String>> excelData = new ArrayList<>();
+    // Bump when DietRules or IngredientMatcher change shape, so old cache files are ignored
+    private static final int CACHE_FORMAT = 1;
 
-        try (InputStream in = ExcelUtils.class.getClassLoader().getResourceAsStream(ExcelPath);
-             Workbook workbook = new XSSFWorkbook(in)) {
+    public static List<Map<String, String>> getData(String sheetName) throws IOException {
+        return getData(List.of(sheetName)).get(sheetName);
+    }
 
-            if (in == null) {
-                throw new IOException("Excel file not found in resources: " + ExcelPath);
-            }
+    // Reads the requested sheets in one streaming (SAX) pass over the workbook instead of building the
+    // whole workbook in memory. Sheet names match ignoring case and surrounding spaces; the result is
+    // keyed by the names as requested.
+    public static Map<String, List<Map<String, String>>> getData(Collection<String> sheetNames) throws IOException {
+        Map<String, String> wanted = new HashMap<>(); // normalized name -> requested name
+        for (String name : sheetNames) wanted.put(name.trim().toLowerCase(), name);
+        Map<String, List<Map<String, String>>> data = new HashMap<>();
 
-            // Find sheet ignoring case and trimming spaces
-            Sheet sheet = null;
-            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
-                String currentName = workbook.getSheetName(i).trim();
-                if (currentName.equalsIgnoreCase(sheetName.trim())) {
-                    sheet = workbook.getSheetAt(i);
-                    break;
+        try (InputStream in = openWorkbook(); OPCPackage pkg = OPCPackage.open(in)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext() && data.size() < wanted.size()) {
+                try (InputStream sheet = sheets.next()) {
+                    String requested = wanted.get(sheets.getSheetName().trim().toLowerCase());
+                    if (requested == null || data.containsKey(requested)) continue;
+                    SheetRows rows = new SheetRows();
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings, rows, new DataFormatter(), false));
+                    parser.parse(new InputSource(sheet));
+                    data.put(requested, rows.finish());
                 }
             }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Could not read " + ExcelPath + ": " + e.getMessage(), e);
+        }
 
-            if (sheet == null) {
-                throw new IllegalArgumentException("Sheet '" + sheetName + "' not found in Excel file.");
+        for (String name : sheetNames) {
+            if (!data.containsKey(name)) {
+                throw new IllegalArgumentException("Sheet '" + name + "' not found in Excel file.");
             }
+        }
+        return data;
+    }
 
-            Row headerRow = sheet.getRow(0);
-            int colCount = headerRow.getLastCellNum();
-            int rowCount = sheet.getPhysicalNumberOfRows();
+    private static InputStream openWorkbook() throws IOException {
+        InputStream in = ExcelUtils.class.getClassLoader().getResourceAsStream(ExcelPath);
+        if (in == null) throw new IOException("Excel file not found in resources: " + ExcelPath);
+        return in;
+    }
 
-            for (int r = 1; r < rowCount; r++) {
-                Row currentRow = sheet.getRow(r);
-                Map<String, String> rowData = new HashMap<>();
+    // Collects one sheet's rows as header -> value maps. Sheets can start with a title row above the
+    // real header: the header is the first row with more than one non-blank cell (a lone value in
+    // column A is a title), resolved once rather than per cell.
+    private static class SheetRows implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final List<Map<String, String>> rows = new ArrayList<>();
+        private final List<Map<Integer, String>> beforeHeader = new ArrayList<>();
+        private Map<Integer, String> current;
+        private String[] header;
 
-                for (int c = 0; c < colCount; c++) {
-                    String columnName = headerRow.getCell(c).getStringCellValue().trim();
-                    Cell cell = currentRow.getCell(c);
-                    String cellValue = (cell == null) ? "" : cell.toString().trim();
-                    rowData.put(columnName, cellValue);
-                }
-                excelData.add(rowData);
+        @Override
+        public void startRow(int rowNum) {
+            current = new TreeMap<>();
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (cellReference == null || formattedValue == null) return;
+            current.put((int) new CellReference(cellReference).getCol(), formattedValue.trim());
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (header != null) {
+                rows.add(toMap(current));
+                return;
+            }
+            long filled = current.values().stream().filter(v -> !v.isEmpty()).count();
+            if (filled > 1) {
+                header = headerOf(current);
+            } else {
+                beforeHeader.add(current);
             }
         }
 
-        return excelData;
+        // No row qualified as a header: the first row is the header
+        List<Map<String, String>> finish() {
+            if (header == null && !beforeHeader.isEmpty()) {
+                header = headerOf(beforeHeader.get(0));
+                for (Map<Integer, String> row : beforeHeader.subList(1, beforeHeader.size())) rows.add(toMap(row));
+            }
+            return rows;
+        }
+
+        private static String[] headerOf(Map<Integer, String> row) {
+            int width = row.isEmpty() ? 0 : Collections.max(row.keySet()) + 1;
+            String[] names = new String[width];
+            row.forEach((col, name) -> names[col] = name);
+            return names;
+        }
+
+        private Map<String, String> toMap(Map<Integer, String> row) {
+            Map<String, String> rowData = new HashMap<>();
+            for (int c = 0; c < header.length; c++) {
+                if (header[c] == null) continue;
+                rowData.put(header[c], row.getOrDefault(c, ""));
+            }
+            return rowData;
+        }
     }
 
     public static DietRules loadDietRules(String sheetName) throws IOException {
-        DietRules rules = new DietRules();
-        List<Map<String, String>> rows = getData(sheetName);
+        return toDietRules(getData(sheetName));
+    }
 
+    private static DietRules toDietRules(List<Map<String, String>> rows) {
+        DietRules rules = new DietRules();
         for (Map<String, String> row : rows) {
             String eliminate = row.getOrDefault("Eliminate", "").trim().toLowerCase();
             String add = row.getOrDefault("Add", "").trim().toLowerCase();
             if (!eliminate.isEmpty()) rules.eliminate.add(eliminate);
             if (!add.isEmpty()) rules.add.add(add);
         }
+        return rules;
+    }
+
+    public static DietRules loadDietRules(String diet, String sheetName) throws IOException {
+        DietRules rules = loadDietRules(sheetName);
+        rules.diet = diet;
+        return rules;
+    }
+
+    // Loads one DietRules per diet, keeping the order of the map (diet name -> sheet name)
+    public static List<DietRules> loadDietRules(Map<String, String> dietSheets) throws IOException {
+        Map<String, List<Map<String, String>>> sheets = getData(new LinkedHashSet<>(dietSheets.values()));
+        List<DietRules> all = new ArrayList<>();
+        for (Map.Entry<String, String> e : dietSheets.entrySet()) {
+            DietRules rules = toDietRules(sheets.get(e.getValue()));
+            rules.diet = e.getKey();
+            all.add(rules);
+        }
+        return all;
+    }
+
+    // ---------------- Compiled rules cache ----------------
+    // Same as loadDietRules(dietSheets), but the rules and their compiled matchers are kept in
+    // cacheDir, in a file named after a hash of the workbook bytes and the diet -> sheet mapping.
+    // A changed workbook or mapping gets a new file; an unreadable file is rebuilt from the workbook.
+    public static List<DietRules> loadDietRules(Map<String, String> dietSheets, Path cacheDir) throws IOException {
+        if (cacheDir == null) return loadDietRules(dietSheets);
+        Path cacheFile = cacheDir.resolve("diet-rules-" + cacheKey(dietSheets) + ".ser");
+
+        if (Files.exists(cacheFile)) {
+            try {
+                List<DietRules> cached = readCache(cacheFile);
+                log.info("Diet rules loaded from " + cacheFile);
+                return cached;
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                log.warn("Ignoring unreadable rules cache " + cacheFile + ": " + e.getMessage());
+            }
+        }
 
+        List<DietRules> rules = loadDietRules(dietSheets);
+        rules.forEach(DietRules::matcher); // compile before writing, so the cache holds the matchers too
+        try {
+            writeCache(cacheFile, rules);
+        } catch (IOException e) {
+            log.warn("Could not write rules cache " + cacheFile + ": " + e.getMessage());
+        }
         return rules;
     }
 
-    public static class DietRules {
+    static String cacheKey(Map<String, String> dietSheets) throws IOException {
+        try (InputStream in = openWorkbook()) {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(in.readAllBytes());
+            md.update(("format=" + CACHE_FORMAT).getBytes(StandardCharsets.UTF_8));
+            for (Map.Entry<String, String> e : dietSheets.entrySet()) {
+                md.update(("\n" + e.getKey() + "=" + e.getValue()).getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(md.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<DietRules> readCache(Path file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            // Only the classes a rules cache is made of
+            in.setObjectInputFilter(ObjectInputFilter.Config.createFilter("commons.*;java.util.*;java.lang.*;!*"));
+            return (List<DietRules>) in.readObject();
+        }
+    }
+
+    // Written to a temp file and moved into place, so concurrent workers never read a partial cache
+    private static void writeCache(Path file, List<DietRules> rules) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), "diet-rules", ".tmp");
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeObject(new ArrayList<>(rules));
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public static class DietRules implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public String diet = "";
         public Set<String> eliminate = new HashSet<>();
         public Set<String> add = new HashSet<>();
+
+        // Compiled on first use from the eliminate/add sets above
+        private volatile IngredientMatcher matcher;
+
+        public IngredientMatcher matcher() {
+            IngredientMatcher m = matcher;
+            if (m == null) {
+                m = IngredientMatcher.compile(this);
+                matcher = m;
+            }
+            return m;
+        }
+
+        public String addTable() {
+            return diet + "_add";
+        }
+
+        public String eliminationTable() {
+            return diet + "_elimination";
+        }
     }
-    
+
 }
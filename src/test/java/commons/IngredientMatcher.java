@@ -0,0 +1,168 @@
+package commons;
+
+import java.io.Serializable;
+import java.util.*;
+
+// Aho-Corasick automaton over word tokens, compiled once from a diet's eliminate/add terms.
+// One linear scan of the ingredient text finds every term that occurs on word boundaries,
+// so "1 cup chopped paneer" matches "paneer" and "cottage cheese cubes" matches "cottage cheese".
+// Serializable so the compiled automaton can be cached with its DietRules (see ExcelUtils).
+public class IngredientMatcher implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int ROOT = 0;
+
+    private final String[] terms;
+    private final boolean[] isEliminate;
+    private final Map<String, Integer> tokenIds = new HashMap<>();
+
+    // Trie nodes: goto edges keyed by token id, failure links and the terms ending at each node
+    private final List<Map<Integer, Integer>> edges = new ArrayList<>();
+    private int[] fail;
+    private int[][] outputs;
+
+    private IngredientMatcher(List<String> termList, List<Boolean> eliminateFlags) {
+        terms = termList.toArray(new String[0]);
+        isEliminate = new boolean[terms.length];
+        for (int i = 0; i < terms.length; i++) isEliminate[i] = eliminateFlags.get(i);
+        build();
+    }
+
+    public static IngredientMatcher compile(ExcelUtils.DietRules rules) {
+        List<String> termList = new ArrayList<>();
+        List<Boolean> flags = new ArrayList<>();
+        for (String t : rules.eliminate) {
+            termList.add(t);
+            flags.add(true);
+        }
+        for (String t : rules.add) {
+            termList.add(t);
+            flags.add(false);
+        }
+        return new IngredientMatcher(termList, flags);
+    }
+
+    // ---------------- Build ----------------
+    private void build() {
+        edges.add(new HashMap<>());
+        List<List<Integer>> nodeTerms = new ArrayList<>();
+        nodeTerms.add(new ArrayList<>());
+
+        for (int t = 0; t < terms.length; t++) {
+            List<String> tokens = tokenize(terms[t]);
+            if (tokens.isEmpty()) continue;
+            int node = ROOT;
+            for (String token : tokens) {
+                int id = tokenIds.computeIfAbsent(token, k -> tokenIds.size());
+                Integer child = edges.get(node).get(id);
+                if (child == null) {
+                    child = edges.size();
+                    edges.add(new HashMap<>());
+                    nodeTerms.add(new ArrayList<>());
+                    edges.get(node).put(id, child);
+                }
+                node = child;
+            }
+            nodeTerms.get(node).add(t);
+        }
+
+        // Breadth-first failure links; each node also reports the terms of its failure chain
+        fail = new int[edges.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : edges.get(ROOT).values()) {
+            fail[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Integer, Integer> e : edges.get(node).entrySet()) {
+                int id = e.getKey();
+                int child = e.getValue();
+                int f = fail[node];
+                while (f != ROOT && !edges.get(f).containsKey(id)) f = fail[f];
+                Integer target = edges.get(f).get(id);
+                fail[child] = (target != null && target != child) ? target : ROOT;
+                nodeTerms.get(child).addAll(nodeTerms.get(fail[child]));
+                queue.add(child);
+            }
+        }
+
+        outputs = new int[nodeTerms.size()][];
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i] = nodeTerms.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    // ---------------- Match ----------------
+    // Terms never span ingredient lines
+    public Result match(List<String> ingredients) {
+        Result result = new Result();
+        if (ingredients == null) return result;
+
+        for (String ingredient : ingredients) {
+            int state = ROOT;
+            int len = ingredient.length();
+            int i = 0;
+            while (i < len) {
+                char c = ingredient.charAt(i);
+                if (c == '\n') {
+                    state = ROOT;
+                    i++;
+                    continue;
+                }
+                if (!Character.isLetterOrDigit(c)) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i < len && Character.isLetterOrDigit(ingredient.charAt(i))) i++;
+                Integer id = tokenIds.get(ingredient.substring(start, i).toLowerCase());
+                state = (id == null) ? ROOT : step(state, id);
+                for (int t : outputs[state]) {
+                    if (isEliminate[t]) result.eliminated.add(terms[t]);
+                    else result.added.add(terms[t]);
+                }
+            }
+        }
+        return result;
+    }
+
+    private int step(int state, int id) {
+        while (state != ROOT && !edges.get(state).containsKey(id)) state = fail[state];
+        return edges.get(state).getOrDefault(id, ROOT);
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int len = text.length();
+        int i = 0;
+        while (i < len) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < len && Character.isLetterOrDigit(text.charAt(i))) i++;
+            tokens.add(text.substring(start, i).toLowerCase());
+        }
+        return tokens;
+    }
+
+    public int termCount() {
+        return terms.length;
+    }
+
+    // Which rule terms were found, kept for auditing the add/elimination decision
+    public static class Result {
+        public final Set<String> eliminated = new TreeSet<>();
+        public final Set<String> added = new TreeSet<>();
+
+        public boolean hasElimination() {
+            return !eliminated.isEmpty();
+        }
+
+        public boolean hasAdd() {
+            return !added.isEmpty();
+        }
+    }
+}
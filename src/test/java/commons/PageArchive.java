@@ -0,0 +1,261 @@
+package commons;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Offline archive of raw fetched pages, so locator or rule changes can be re-run without re-crawling.
+// A directory of append-only segments pages-NNN.seg, each record holding one page deflate-compressed:
+//   int magic | byte kind | long fetchedAt | int urlLen | url | int htmlLen | int compressedLen | compressed html
+// Every segment has an offset index pages-NNN.idx of (long offset, byte kind, int urlLen, url) entries,
+// written after the record, so an index entry never points at a partial record. Segments roll over at
+// maxSegmentBytes. The Reader memory-maps each segment and inflates records straight from the mapping.
+public class PageArchive {
+    private static final Logger log = LogManager.getLogger(PageArchive.class.getName());
+
+    public static final byte LISTING = 0;
+    public static final byte DETAIL = 1;
+
+    private static final int MAGIC = 0x52524131; // "RRA1"
+    private static final long DEFAULT_SEGMENT_BYTES = 512L * 1024 * 1024;
+
+    private static Path segmentPath(Path dir, int n) {
+        return dir.resolve(String.format("pages-%03d.seg", n));
+    }
+
+    private static Path indexPath(Path dir, int n) {
+        return dir.resolve(String.format("pages-%03d.idx", n));
+    }
+
+    private static int segmentCount(Path dir) {
+        int n = 0;
+        while (Files.exists(segmentPath(dir, n))) n++;
+        return n;
+    }
+
+    // ---------------- Writer ----------------
+    public static class Writer implements AutoCloseable {
+        private final Path dir;
+        private final long maxSegmentBytes;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] compressBuffer = new byte[64 * 1024];
+
+        private int segment;
+        private FileChannel segmentChannel;
+        private FileChannel indexChannel;
+        private long pagesWritten, bytesIn, bytesOut;
+
+        public Writer(Path dir) throws IOException {
+            this(dir, DEFAULT_SEGMENT_BYTES);
+        }
+
+        // Appends to the last existing segment, if any
+        public Writer(Path dir, long maxSegmentBytes) throws IOException {
+            this.dir = dir;
+            this.maxSegmentBytes = maxSegmentBytes;
+            Files.createDirectories(dir);
+            segment = Math.max(0, segmentCount(dir) - 1);
+            openSegment();
+        }
+
+        private void openSegment() throws IOException {
+            segmentChannel = FileChannel.open(segmentPath(dir, segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            indexChannel = FileChannel.open(indexPath(dir, segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        public void append(byte kind, String url, String html) throws IOException {
+            byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+            byte[] htmlBytes = html.getBytes(StandardCharsets.UTF_8);
+            lock.lock();
+            try {
+                int compressedLen = compress(htmlBytes);
+                ByteBuffer record = ByteBuffer.allocate(4 + 1 + 8 + 4 + urlBytes.length + 4 + 4 + compressedLen);
+                record.putInt(MAGIC).put(kind).putLong(System.currentTimeMillis())
+                        .putInt(urlBytes.length).put(urlBytes)
+                        .putInt(htmlBytes.length).putInt(compressedLen).put(compressBuffer, 0, compressedLen)
+                        .flip();
+
+                if (segmentChannel.size() > 0 && segmentChannel.size() + record.remaining() > maxSegmentBytes) {
+                    closeChannels();
+                    segment++;
+                    openSegment();
+                }
+                long offset = segmentChannel.size();
+                while (record.hasRemaining()) segmentChannel.write(record);
+
+                ByteBuffer entry = ByteBuffer.allocate(8 + 1 + 4 + urlBytes.length);
+                entry.putLong(offset).put(kind).putInt(urlBytes.length).put(urlBytes).flip();
+                while (entry.hasRemaining()) indexChannel.write(entry);
+
+                pagesWritten++;
+                bytesIn += htmlBytes.length;
+                bytesOut += record.capacity();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int compress(byte[] input) {
+            deflater.reset();
+            deflater.setInput(input);
+            deflater.finish();
+            int len = 0;
+            while (!deflater.finished()) {
+                if (len == compressBuffer.length) compressBuffer = Arrays.copyOf(compressBuffer, compressBuffer.length * 2);
+                len += deflater.deflate(compressBuffer, len, compressBuffer.length - len);
+            }
+            return len;
+        }
+
+        private void closeChannels() throws IOException {
+            segmentChannel.force(false);
+            indexChannel.force(false);
+            segmentChannel.close();
+            indexChannel.close();
+        }
+
+        // Archiving must never fail a scrape
+        public void appendQuietly(byte kind, String url, String html) {
+            try {
+                append(kind, url, html);
+            } catch (IOException e) {
+                log.warn("Could not archive " + url + ": " + e.getMessage());
+            }
+        }
+
+        public String summary() {
+            return String.format("Archive %s: %d pages, %.1f MB html -> %.1f MB on disk", dir, pagesWritten,
+                    bytesIn / 1048576.0, bytesOut / 1048576.0);
+        }
+
+        @Override
+        public void close() throws IOException {
+            lock.lock();
+            try {
+                closeChannels();
+                deflater.end();
+            } finally {
+                lock.unlock();
+            }
+            log.info(summary());
+        }
+    }
+
+    // ---------------- Reader ----------------
+    public static class Reader implements AutoCloseable {
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+        // Latest record per URL, in archive order
+        private final Map<String, Entry> index = new LinkedHashMap<>();
+
+        public Reader(Path dir) throws IOException {
+            int count = segmentCount(dir);
+            if (count == 0) throw new NoSuchFileException(segmentPath(dir, 0).toString());
+            for (int n = 0; n < count; n++) {
+                try (FileChannel ch = FileChannel.open(segmentPath(dir, n), StandardOpenOption.READ)) {
+                    segments.add(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+                }
+                loadIndex(indexPath(dir, n), n);
+            }
+            log.info("Archive " + dir + ": " + index.size() + " pages in " + count + " segment(s)");
+        }
+
+        private void loadIndex(Path file, int segment) throws IOException {
+            if (!Files.exists(file)) return;
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+            long segmentSize = segments.get(segment).capacity();
+            while (buf.remaining() >= 13) {
+                long offset = buf.getLong();
+                byte kind = buf.get();
+                int urlLen = buf.getInt();
+                if (urlLen < 0 || urlLen > buf.remaining()) break; // torn last entry
+                byte[] url = new byte[urlLen];
+                buf.get(url);
+                if (offset >= segmentSize) break;
+                String key = new String(url, StandardCharsets.UTF_8);
+                index.remove(key);
+                index.put(key, new Entry(segment, (int) offset, kind));
+            }
+        }
+
+        public int size() {
+            return index.size();
+        }
+
+        public List<String> urls(byte kind) {
+            List<String> urls = new ArrayList<>();
+            index.forEach((url, e) -> {
+                if (e.kind == kind) urls.add(url);
+            });
+            return urls;
+        }
+
+        public boolean contains(String url) {
+            return index.containsKey(url);
+        }
+
+        // Raw HTML as fetched, or null when the URL isn't archived. Safe to call from many threads.
+        public String read(String url) throws IOException {
+            Entry e = index.get(url);
+            if (e == null) return null;
+            ByteBuffer buf = segments.get(e.segment).duplicate();
+            buf.position(e.offset);
+            if (buf.getInt() != MAGIC) throw new IOException("Corrupt archive record for " + url);
+            buf.get();       // kind
+            buf.getLong();   // fetchedAt
+            int urlLen = buf.getInt();
+            buf.position(buf.position() + urlLen);
+            int htmlLen = buf.getInt();
+            int compressedLen = buf.getInt();
+            buf.limit(buf.position() + compressedLen);
+
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(buf);
+                byte[] html = new byte[htmlLen];
+                int n = 0;
+                while (n < htmlLen && !inflater.finished()) {
+                    int read = inflater.inflate(html, n, htmlLen - n);
+                    if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                    n += read;
+                }
+                if (n != htmlLen) throw new IOException("Truncated archive record for " + url);
+                return new String(html, StandardCharsets.UTF_8);
+            } catch (DataFormatException ex) {
+                throw new IOException("Corrupt archive record for " + url, ex);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        @Override
+        public void close() {
+            // Mappings are released when the buffers are collected
+            segments.clear();
+            index.clear();
+        }
+
+        private static class Entry {
+            final int segment;
+            final int offset;
+            final byte kind;
+
+            Entry(int segment, int offset, byte kind) {
+                this.segment = segment;
+                this.offset = offset;
+                this.kind = kind;
+            }
+        }
+    }
+}
@@ -16,4 +16,8 @@ public class Recipe {
     public String Preparation_method = "";
     public String Nutrient_values = "";
     public String Recipe_URL = "";
+    // Incremental re-crawl: hash of the fields above and the HTTP validators of the page, when sent
+    public String Content_Hash = "";
+    public String ETag = "";
+    public String Last_Modified = "";
 }
@@ -0,0 +1,41 @@
+package commons;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// What an incremental re-crawl knows about a stored recipe page: the hash of its extracted fields
+// and the HTTP validators (ETag / Last-Modified) the server sent with it, if any
+public class RecipeFingerprint {
+    public final String contentHash;
+    public final String etag;
+    public final String lastModified;
+
+    public RecipeFingerprint(String contentHash, String etag, String lastModified) {
+        this.contentHash = contentHash == null ? "" : contentHash;
+        this.etag = etag == null ? "" : etag;
+        this.lastModified = lastModified == null ? "" : lastModified;
+    }
+
+    public boolean hasValidators() {
+        return !etag.isEmpty() || !lastModified.isEmpty();
+    }
+
+    // SHA-256 over every extracted field, so any change to what we store changes the hash
+    public static String contentHash(Recipe r) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String field : new String[]{r.Recipe_Name, r.Recipe_Category, r.Food_Category,
+                    r.Ingredients == null ? "" : String.join("\n", r.Ingredients),
+                    r.Preparation_Time, r.Cooking_Time, r.Tag, r.No_of_servings, r.Cuisine_category,
+                    r.Recipe_Description, r.Preparation_method, r.Nutrient_values, r.Recipe_URL}) {
+                md.update((field == null ? "" : field).getBytes(StandardCharsets.UTF_8));
+                md.update((byte) 0); // field separator
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package commons;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Typed values parsed from a recipe's display strings at ingest time, for the indexed columns of the
+// recipe tables: "1 hour 10 mins" -> 70, "4 servings" -> 4, "Protein:11.2 g|..." -> protein_g 11.2,
+// and the ingredient lines as an array plus their distinct word terms for the GIN index.
+// Fields are null when the page didn't have the value or it couldn't be read.
+public class RecipeValues {
+
+    private static final Pattern HOURS = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*(?:h|hr|hrs|hour|hours)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern MINUTES = Pattern.compile("(\\d+)\\s*(?:m|min|mins|minute|minutes)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHOLE_NUMBER = Pattern.compile("(\\d+)");
+    private static final Pattern NUMBER = Pattern.compile("(\\d+(?:\\.\\d+)?)");
+    private static final Pattern AMOUNT = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*(kcal|cal|mg|g)?", Pattern.CASE_INSENSITIVE);
+
+    public final String[] ingredientLines;
+    public final String[] ingredientTerms;
+    public final Integer prepMinutes;
+    public final Integer cookMinutes;
+    public final Integer servings;
+    public final BigDecimal energyKcal;
+    public final BigDecimal proteinG;
+    public final BigDecimal carbsG;
+    public final BigDecimal fatG;
+    public final BigDecimal fiberG;
+
+    public RecipeValues(Recipe r) {
+        ingredientLines = lines(r.Ingredients);
+        ingredientTerms = terms(ingredientLines);
+        prepMinutes = minutes(r.Preparation_Time);
+        cookMinutes = minutes(r.Cooking_Time);
+        servings = servings(r.No_of_servings);
+        Map<String, String> nutrients = nutrients(r.Nutrient_values);
+        energyKcal = amount(nutrients.get("energy"), "kcal");
+        proteinG = amount(nutrients.get("protein"), "g");
+        carbsG = amount(nutrients.getOrDefault("carbohydrates", nutrients.get("carbs")), "g");
+        fatG = amount(nutrients.get("fat"), "g");
+        fiberG = amount(nutrients.getOrDefault("fiber", nutrients.get("fibre")), "g");
+    }
+
+    // Sections come as one multi-line entry, so every non-blank line is its own ingredient
+    static String[] lines(List<String> ingredients) {
+        if (ingredients == null) return new String[0];
+        List<String> lines = new ArrayList<>();
+        for (String entry : ingredients) {
+            if (entry == null) continue;
+            for (String line : entry.split("\n")) {
+                if (!line.isBlank()) lines.add(line.trim());
+            }
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    // Lower-case word tokens as IngredientMatcher sees them, without pure numbers, sorted and distinct
+    static String[] terms(String[] lines) {
+        Set<String> terms = new TreeSet<>();
+        for (String line : lines) {
+            for (String token : IngredientMatcher.tokenize(line)) {
+                if (!token.chars().allMatch(Character::isDigit)) terms.add(token);
+            }
+        }
+        return terms.toArray(new String[0]);
+    }
+
+    // "15 mins", "1 hour 10 mins", "1.5 hrs"; a bare number is taken as minutes
+    static Integer minutes(String text) {
+        if (text == null || text.isBlank()) return null;
+        double total = 0;
+        boolean found = false;
+        Matcher h = HOURS.matcher(text);
+        while (h.find()) {
+            total += Double.parseDouble(h.group(1)) * 60;
+            found = true;
+        }
+        Matcher m = MINUTES.matcher(text);
+        while (m.find()) {
+            total += Double.parseDouble(m.group(1));
+            found = true;
+        }
+        if (!found) {
+            Matcher n = NUMBER.matcher(text);
+            if (!n.find()) return null;
+            total = Double.parseDouble(n.group(1));
+        }
+        // A digit run too long for the column is a page typo, not a time
+        return total > Integer.MAX_VALUE ? null : (int) Math.round(total);
+    }
+
+    // First whole number: "4 servings", "10 pieces", "2-3 servings" -> 2
+    static Integer servings(String text) {
+        if (text == null) return null;
+        Matcher m = WHOLE_NUMBER.matcher(text);
+        if (!m.find()) return null;
+        try {
+            return Integer.valueOf(m.group(1));
+        } catch (NumberFormatException e) {
+            return null; // too long for an int
+        }
+    }
+
+    // "Energy:224 cal|Protein:11.2 g" -> {energy=224 cal, protein=11.2 g}
+    static Map<String, String> nutrients(String text) {
+        Map<String, String> values = new HashMap<>();
+        if (text == null) return values;
+        for (String pair : text.split("\\|")) {
+            int colon = pair.indexOf(':');
+            if (colon <= 0) continue;
+            values.put(pair.substring(0, colon).trim().toLowerCase(), pair.substring(colon + 1).trim());
+        }
+        return values;
+    }
+
+    // Amount in the column's unit; mg and g are converted, energy is taken as kcal whether written cal or kcal
+    static BigDecimal amount(String text, String unit) {
+        if (text == null) return null;
+        Matcher m = AMOUNT.matcher(text.replace(",", "")); // thousands separators
+        if (!m.find()) return null;
+        BigDecimal value = new BigDecimal(m.group(1));
+        String given = m.group(2) == null ? unit : m.group(2).toLowerCase();
+        if (unit.equals("g") && given.equals("mg")) return value.movePointLeft(3);
+        return value;
+    }
+}
@@ -0,0 +1,210 @@
+package commons;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Write-behind stage between the scraper threads and Postgres. Scrapers hand over classified recipes
+// and go back to the network; dedicated writer threads drain the queue into DbManager. A full queue
+// blocks submit() so the scrapers slow down when the database falls behind.
+// Written/failed counts and write time come from DbManager's flushes, i.e. rows actually committed.
+public class RecipeWriteQueue {
+    private static final Logger log = LogManager.getLogger(RecipeWriteQueue.class.getName());
+
+    private static final PendingWrite END_OF_STREAM = new PendingWrite(-1, null, null, null);
+
+    private final DbManager db;
+    private final BlockingQueue<PendingWrite> queue;
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean closed = false;
+
+    // Sequence numbers of rows submitted but not yet written, so flush() can wait for
+    // everything submitted before it without waiting for rows that arrive afterwards
+    private final ReentrantLock outstandingLock = new ReentrantLock();
+    private final Condition progressed = outstandingLock.newCondition();
+    private final TreeSet<Long> outstanding = new TreeSet<>();
+    private long nextSeq = 0;
+
+    // ---------------- Counters ----------------
+    private final AtomicLong buffered = new AtomicLong();      // handed to DbManager's batch buffer
+    private final AtomicLong written = new AtomicLong();       // committed by a flush
+    private final AtomicLong failed = new AtomicLong();        // recipes a flush gave up on
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();    // time flushes spent writing
+    private final AtomicLong queuedNanos = new AtomicLong();   // time rows waited in the queue
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    public RecipeWriteQueue(DbManager db, int capacity, int writerThreads) {
+        this.db = db;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        db.addCommitListener((rows, nanos) -> {
+            written.addAndGet(rows);
+            writeNanos.addAndGet(nanos);
+            batches.incrementAndGet();
+        });
+        db.addWriteFailureListener(url -> failed.incrementAndGet());
+        for (int i = 0; i < writerThreads; i++) {
+            Thread t = new Thread(this::drain, "db-writer-" + i);
+            t.setDaemon(true);
+            t.start();
+            writers.add(t);
+        }
+    }
+
+    // Blocks while the queue is full
+    public void submit(String tableName, Recipe recipe) throws InterruptedException {
+        submit(tableName, recipe, null);
+    }
+
+    // staleTable, when set, has its row for the same recipe removed (see DbManager.queueRecipe)
+    public void submit(String tableName, Recipe recipe, String staleTable) throws InterruptedException {
+        if (closed) throw new IllegalStateException("Write queue is closed");
+        long seq;
+        outstandingLock.lock();
+        try {
+            seq = nextSeq++;
+            outstanding.add(seq);
+        } finally {
+            outstandingLock.unlock();
+        }
+        try {
+            queue.put(new PendingWrite(seq, tableName, recipe, staleTable));
+        } catch (InterruptedException e) {
+            done(seq);
+            throw e;
+        }
+        maxDepth.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    private void drain() {
+        while (true) {
+            PendingWrite w;
+            try {
+                w = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (w == END_OF_STREAM) return;
+
+            queuedNanos.addAndGet(System.nanoTime() - w.enqueuedAt);
+            try {
+                db.queueRecipe(w.tableName, w.recipe, w.staleTable);
+                buffered.incrementAndGet();
+            } catch (SQLException e) {
+                failed.incrementAndGet();
+                log.warn("Write to " + w.tableName + " failed for " + w.recipe.Recipe_URL + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                // Keep the writer alive: a dead writer leaves submit() and close() blocked on a full queue.
+                // The failure listeners count it as failed and requeue the URL.
+                log.error("Write to " + w.tableName + " failed for " + w.recipe.Recipe_URL, e);
+                db.reportWriteFailure(w.recipe.Recipe_URL);
+            } finally {
+                done(w.seq);
+            }
+        }
+    }
+
+    private void done(long seq) {
+        outstandingLock.lock();
+        try {
+            outstanding.remove(seq);
+            progressed.signalAll();
+        } finally {
+            outstandingLock.unlock();
+        }
+    }
+
+    // Waits until everything submitted before this call has reached DbManager, then flushes its batch buffer
+    public void flush() throws InterruptedException, SQLException {
+        outstandingLock.lock();
+        try {
+            long target = nextSeq;
+            while (!outstanding.isEmpty() && outstanding.first() < target) progressed.await();
+        } finally {
+            outstandingLock.unlock();
+        }
+        db.flush();
+    }
+
+    // Drain-on-shutdown: stop accepting rows, let the writers empty the queue, then flush
+    public void close() throws InterruptedException, SQLException {
+        if (closed) return;
+        closed = true;
+        for (int i = 0; i < writers.size(); i++) {
+            queue.put(END_OF_STREAM);
+        }
+        for (Thread t : writers) {
+            t.join(TimeUnit.MINUTES.toMillis(5));
+        }
+        db.flush();
+        log.info(summary());
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    // Rows submitted but not yet written: still queued (shutdown markers excluded) or in DbManager's batch buffer
+    public long getUndrained() {
+        return queue.stream().filter(w -> w != END_OF_STREAM).count() + db.getPendingRows();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxDepth.get();
+    }
+
+    public long getBuffered() {
+        return buffered.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    // Per committed batch
+    public double getAvgWriteMillis() {
+        long n = batches.get();
+        return n == 0 ? 0 : writeNanos.get() / 1_000_000.0 / n;
+    }
+
+    public double getAvgQueueWaitMillis() {
+        long n = buffered.get() + failed.get();
+        return n == 0 ? 0 : queuedNanos.get() / 1_000_000.0 / n;
+    }
+
+    public String summary() {
+        return String.format("Write queue: buffered=%d, written=%d, failed=%d, batches=%d, depth=%d, maxDepth=%d, avgWait=%.1fms, avgBatchWrite=%.1fms",
+                getBuffered(), getWritten(), getFailed(), batches.get(), getQueueDepth(), getMaxQueueDepth(), getAvgQueueWaitMillis(), getAvgWriteMillis());
+    }
+
+    private static class PendingWrite {
+        final long seq;
+        final String tableName;
+        final Recipe recipe;
+        final String staleTable;
+        final long enqueuedAt = System.nanoTime();
+
+        PendingWrite(long seq, String tableName, Recipe recipe, String staleTable) {
+            this.seq = seq;
+            this.tableName = tableName;
+            this.recipe = recipe;
+            this.staleTable = staleTable;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package commons;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import utilities.Metrics;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Postgres-backed queue that spreads one crawl over several JVMs (see DbManager's crawl_queue).
+// The coordinator enqueues the recipe URLs its listing walk discovers; the table's primary key is the
+// crawl-wide visited set. Workers claim batches under a lease that a heartbeat keeps extending, so a
+// killed worker's URLs go back to the others once its lease expires.
+// Like CrawlFrontier, a URL is only marked DONE after the write-behind queue has been flushed, so a
+// worker dying between scraping and writing leaves the URL to be scraped again, never lost. A URL whose
+// rows DbManager gave up writing goes back to the queue instead of DONE. On the coordinator's side, the
+// frontier inserts the buffered URLs before it checkpoints them as DONE (see flushEnqueued).
+public class WorkQueue implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(WorkQueue.class.getName());
+
+    private static final int ENQUEUE_BATCH = 50;
+
+    private final DbManager db;
+    private final RecipeWriteQueue writeQueue;
+    private final String crawlKey;
+    private final String workerId;
+    private final long leaseMillis;
+    private final int maxAttempts;
+
+    // Coordinator: URLs not yet inserted. Worker: URLs scraped but not yet marked DONE.
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<String> toEnqueue = new ArrayList<>();
+    private List<String> toComplete = new ArrayList<>();
+
+    private final ScheduledExecutorService scheduler;
+    private final Set<String> unwritten = ConcurrentHashMap.newKeySet();
+    private final Consumer<String> unwrittenListener = unwritten::add;
+
+    private static final Metrics.Counter claimedTotal =
+            Metrics.counter("scraper_work_queue_total", "Work queue URLs by outcome", "result", "claimed");
+    private static final Metrics.Counter doneTotal =
+            Metrics.counter("scraper_work_queue_total", "Work queue URLs by outcome", "result", "done");
+    private static final Metrics.Counter failedTotal =
+            Metrics.counter("scraper_work_queue_total", "Work queue URLs by outcome", "result", "failed");
+
+    public WorkQueue(DbManager db, RecipeWriteQueue writeQueue, String crawlKey, String workerId,
+                     long leaseMillis, int maxAttempts) {
+        this.db = db;
+        this.writeQueue = writeQueue;
+        this.crawlKey = crawlKey;
+        this.workerId = workerId;
+        this.leaseMillis = leaseMillis;
+        this.maxAttempts = maxAttempts;
+        db.addWriteFailureListener(unwrittenListener);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "work-queue-" + crawlKey);
+            t.setDaemon(true);
+            return t;
+        });
+        // Well inside the lease, so one missed beat doesn't lose it
+        long interval = Math.max(1000, leaseMillis / 3);
+        scheduler.scheduleWithFixedDelay(this::syncQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public static String defaultWorkerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "localhost";
+        }
+        return host + "-" + ManagementFactory.getRuntimeMXBean().getPid();
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    // ---------------- Coordinator ----------------
+    // Fresh crawl: drop the earlier queue for this key and reopen it
+    public void reset() throws SQLException {
+        db.resetWorkQueue(crawlKey);
+        db.setWorkQueueClosed(crawlKey, false);
+    }
+
+    public void reopen() throws SQLException {
+        db.setWorkQueueClosed(crawlKey, false);
+    }
+
+    public void enqueue(String url) throws SQLException {
+        List<String> batch = null;
+        lock.lock();
+        try {
+            toEnqueue.add(url);
+            if (toEnqueue.size() >= ENQUEUE_BATCH) {
+                batch = toEnqueue;
+                toEnqueue = new ArrayList<>();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (batch != null) db.enqueueWork(crawlKey, batch);
+    }
+
+    // Inserts the buffered URLs now. The coordinator's frontier calls this before each checkpoint,
+    // since it marks a URL DONE as soon as enqueue() returns.
+    public void flushEnqueued() throws SQLException {
+        List<String> enqueue;
+        lock.lock();
+        try {
+            enqueue = toEnqueue;
+            toEnqueue = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        if (enqueue.isEmpty()) return;
+        try {
+            db.enqueueWork(crawlKey, enqueue);
+        } catch (SQLException e) {
+            lock.lock();
+            try {
+                toEnqueue.addAll(enqueue);
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    // Every URL is queued: workers that find nothing left to claim may exit
+    public void markClosed() throws SQLException, InterruptedException {
+        sync();
+        db.setWorkQueueClosed(crawlKey, true);
+    }
+
+    // ---------------- Worker ----------------
+    public List<String> claim(int batchSize) throws SQLException {
+        List<String> urls = db.claimWork(crawlKey, workerId, batchSize, leaseMillis, maxAttempts);
+        claimedTotal.add(urls.size());
+        return urls;
+    }
+
+    // Recorded now, marked DONE by the next sync once the recipe's rows are written
+    public void complete(String url) {
+        lock.lock();
+        try {
+            toComplete.add(url);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Back to the queue for another attempt, by any worker
+    public void fail(String url) throws SQLException {
+        db.finishWork(crawlKey, workerId, List.of(url), false, maxAttempts);
+        failedTotal.inc();
+    }
+
+    public boolean isClosed() throws SQLException {
+        return db.isWorkQueueClosed(crawlKey);
+    }
+
+    // URLs some worker may still scrape: pending, leased, or leased by a dead worker
+    public int remaining() throws SQLException {
+        Map<String, Integer> counts = counts();
+        return counts.getOrDefault("PENDING", 0) + counts.getOrDefault("IN_FLIGHT", 0);
+    }
+
+    public Map<String, Integer> counts() throws SQLException {
+        return db.workCounts(crawlKey, maxAttempts);
+    }
+
+    // ---------------- Sync ----------------
+    // Inserts buffered URLs, marks written recipes DONE and renews this worker's leases
+    public void sync() throws SQLException, InterruptedException {
+        flushEnqueued();
+        List<String> completed;
+        lock.lock();
+        try {
+            completed = toComplete;
+            toComplete = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        List<String> lost = new ArrayList<>();
+        try {
+            if (!completed.isEmpty()) {
+                writeQueue.flush();
+                completed.removeIf(url -> unwritten.remove(url) && lost.add(url));
+                db.finishWork(crawlKey, workerId, completed, true, maxAttempts);
+                doneTotal.add(completed.size());
+                if (!lost.isEmpty()) {
+                    db.finishWork(crawlKey, workerId, lost, false, maxAttempts);
+                    failedTotal.add(lost.size());
+                    log.warn("[" + crawlKey + "] " + lost.size() + " scraped recipes were not written, back to the queue");
+                }
+            }
+        } catch (SQLException | InterruptedException e) {
+            // Keep them for the next sync
+            lock.lock();
+            try {
+                toComplete.addAll(completed);
+                toComplete.addAll(lost);
+                unwritten.addAll(lost);
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        db.extendLeases(crawlKey, workerId, leaseMillis);
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (Exception e) {
+            log.warn("[" + crawlKey + "] Work queue sync failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws SQLException, InterruptedException {
+        scheduler.shutdown();
+        try {
+            sync();
+        } finally {
+            db.removeWriteFailureListener(unwrittenListener);
+        }
+    }
+}
@@ -1,38 +1,80 @@
 package driverFactory;
 
 import io.github.bonigarcia.wdm.WebDriverManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.PageLoadStrategy;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
+import utilities.Metrics;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class BrowserFactory {
+    private static final Logger log = LogManager.getLogger(BrowserFactory.class.getName());
 
-    private static ThreadLocal<WebDriver> driver = new ThreadLocal<>();
+    // Applies to every driver started after it is set
+    private static volatile BrowserProfile profile = BrowserProfile.FULL;
 
-    public static WebDriver createDriver(boolean headless) {
-        WebDriverManager.chromedriver().setup();
+    // chromedriver binary only needs to be resolved once per JVM.
+    // A lock rather than synchronized, which would pin a virtual thread to its carrier.
+    private static volatile boolean driverBinaryResolved = false;
+    private static final ReentrantLock resolveLock = new ReentrantLock();
+
+    public static void setProfile(BrowserProfile browserProfile) {
+        profile = browserProfile;
+    }
+
+    public static BrowserProfile getProfile() {
+        return profile;
+    }
+
+    // Starts a Chrome driver; the caller owns it and quits it (DriverPool, TabPool, the listing walker)
+    public static WebDriver newDriver(boolean headless) {
+        long start = System.nanoTime();
+        resolveDriverBinary();
+        BrowserProfile p = profile;
         ChromeOptions options = new ChromeOptions();
         if (headless) options.addArguments("--headless=new");
         options.addArguments("--disable-notifications", "--disable-popup-blocking", "--blink-settings=imagesEnabled=false", "--remote-allow-origins=*");
+        // Readers wait for p.readySelector themselves instead of for every subresource
+        if (p.lean) options.setPageLoadStrategy(PageLoadStrategy.EAGER);
 
-        driver.set(new ChromeDriver(options));
-
-        WebDriver webDriver = driver.get();
+        ChromeDriver webDriver = new ChromeDriver(options);
+        if (p.lean) blockRequests(webDriver, p.blockedUrlPatterns());
         webDriver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
         webDriver.manage().window().maximize();
+        Metrics.timer("scraper_driver_startup_seconds", "Time to start a Chrome driver").recordSince(start);
         return webDriver;
     }
 
-    public static WebDriver getDriver() {
-        return driver.get();
+    // Through chromedriver's CDP endpoint, so no version-specific DevTools bindings are needed. The block
+    // list lives in the browser session and survives navigation and DriverPool resets.
+    private static void blockRequests(ChromeDriver webDriver, List<String> patterns) {
+        if (patterns.isEmpty()) return;
+        try {
+            webDriver.executeCdpCommand("Network.enable", Map.of());
+            webDriver.executeCdpCommand("Network.setBlockedURLs", Map.of("urls", patterns));
+        } catch (WebDriverException e) {
+            log.warn("Could not set up request blocking, pages load in full: " + e.getMessage());
+        }
     }
 
-    public static void quitDriver() {
-        if (driver.get() != null) {
-            driver.get().quit();
-            driver.remove();
+    private static void resolveDriverBinary() {
+        if (driverBinaryResolved) return;
+        resolveLock.lock();
+        try {
+            if (!driverBinaryResolved) {
+                WebDriverManager.chromedriver().setup();
+                driverBinaryResolved = true;
+            }
+        } finally {
+            resolveLock.unlock();
         }
     }
-}
\ No newline at end of file
+}
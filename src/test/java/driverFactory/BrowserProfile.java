@@ -0,0 +1,68 @@
+package driverFactory;
+
+import java.util.*;
+
+// How scraping browsers are started. FULL is plain Chrome with images off, waiting for the load event.
+// LEAN uses the eager page-load strategy (driver.get returns at DOMContentLoaded) and has Chrome refuse
+// requests for the blocked resource types and URL patterns (ads, analytics, third-party widgets),
+// so a detail page costs its HTML and the scripts it needs rather than everything it references.
+public class BrowserProfile {
+
+    public static final String FULL_NAME = "full";
+    public static final String LEAN_NAME = "lean";
+
+    // Detail page is readable once the heading or the ingredient list is in the DOM
+    public static final String DEFAULT_READY_SELECTOR = "h1.rec-heading, #ingredients";
+
+    public static final BrowserProfile FULL = new BrowserProfile(false, List.of(), List.of(), DEFAULT_READY_SELECTOR);
+
+    // Network.setBlockedURLs matches URL patterns only, so resource types are blocked by file extension
+    private static final Map<String, List<String>> TYPE_EXTENSIONS = Map.of(
+            "image", List.of("png", "jpg", "jpeg", "gif", "webp", "avif", "svg", "ico"),
+            "font", List.of("woff", "woff2", "ttf", "otf", "eot"),
+            "stylesheet", List.of("css"),
+            "media", List.of("mp4", "webm", "mp3", "ogg", "m3u8"),
+            "script", List.of("js"));
+
+    public final boolean lean;
+    public final List<String> blockedTypes;
+    public final List<String> blockedUrls;
+    public final String readySelector;
+
+    private BrowserProfile(boolean lean, List<String> blockedTypes, List<String> blockedUrls, String readySelector) {
+        this.lean = lean;
+        this.blockedTypes = blockedTypes;
+        this.blockedUrls = blockedUrls;
+        this.readySelector = readySelector;
+    }
+
+    // Types: image, font, stylesheet, media, script. Urls: Chrome wildcard patterns, e.g. *doubleclick.net*
+    public static BrowserProfile lean(Collection<String> blockedTypes, Collection<String> blockedUrls, String readySelector) {
+        List<String> types = new ArrayList<>();
+        for (String type : blockedTypes) {
+            String t = type.trim().toLowerCase();
+            if (t.isEmpty()) continue;
+            if (!TYPE_EXTENSIONS.containsKey(t)) throw new IllegalArgumentException("Unknown resource type to block: " + type);
+            types.add(t);
+        }
+        List<String> urls = blockedUrls.stream().map(String::trim).filter(u -> !u.isEmpty()).toList();
+        String selector = readySelector == null || readySelector.isBlank() ? DEFAULT_READY_SELECTOR : readySelector.trim();
+        return new BrowserProfile(true, List.copyOf(types), urls, selector);
+    }
+
+    public String name() {
+        return lean ? LEAN_NAME : FULL_NAME;
+    }
+
+    // Everything handed to Network.setBlockedURLs: the denylist plus "*.ext" and "*.ext?*" per blocked type
+    public List<String> blockedUrlPatterns() {
+        List<String> patterns = new ArrayList<>(blockedUrls);
+        for (String type : blockedTypes) {
+            for (String ext : TYPE_EXTENSIONS.get(type)) {
+                patterns.add("*." + ext);
+                patterns.add("*." + ext + "?*");
+            }
+        }
+        return patterns;
+    }
+}
@@ -0,0 +1,153 @@
+package driverFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+import utilities.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+// Bounded pool of pre-warmed Chrome drivers shared by the scraper worker threads.
+// A driver is reset between leases and replaced after maxUses leases or when a lease marks it broken.
+public class DriverPool implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(DriverPool.class.getName());
+
+    private final boolean headless;
+    private final int size;
+    private final int maxUses;
+
+    // One permit per driver slot; idle holds drivers that are started and reset
+    private final Semaphore slots;
+    private final ConcurrentLinkedQueue<PooledDriver> idle = new ConcurrentLinkedQueue<>();
+    private final Set<PooledDriver> all = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
+
+    public DriverPool(int size, int maxUses, boolean headless) {
+        this.size = size;
+        this.maxUses = maxUses;
+        this.headless = headless;
+        this.slots = new Semaphore(size, true);
+        Metrics.gauge("scraper_browsers_active", "Pooled browsers currently leased", () -> size - slots.availablePermits());
+        Metrics.gauge("scraper_browsers_started", "Pooled browsers currently running", all::size);
+    }
+
+    // Start all drivers up front, in parallel, so the first recipes don't pay for browser startup
+    public void preWarm() throws InterruptedException {
+        ExecutorService starter = Executors.newFixedThreadPool(size);
+        List<Future<PooledDriver>> started = new ArrayList<>();
+        for (int i = idle.size(); i < size; i++) {
+            started.add(starter.submit(this::startDriver));
+        }
+        for (Future<PooledDriver> f : started) {
+            try {
+                idle.add(f.get());
+            } catch (ExecutionException e) {
+                log.warn("Could not pre-warm driver: " + e.getCause().getMessage());
+            }
+        }
+        starter.shutdown();
+        log.info("Driver pool ready: " + idle.size() + "/" + size + " drivers started");
+    }
+
+    public Lease lease() throws InterruptedException {
+        if (closed) throw new IllegalStateException("Driver pool is closed");
+        slots.acquire();
+        try {
+            PooledDriver pd = idle.poll();
+            if (pd == null) pd = startDriver();
+            return new Lease(pd);
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    private PooledDriver startDriver() {
+        PooledDriver pd = new PooledDriver(BrowserFactory.newDriver(headless));
+        all.add(pd);
+        return pd;
+    }
+
+    private void giveBack(PooledDriver pd, boolean broken) {
+        try {
+            pd.uses++;
+            if (closed) {
+                discard(pd);
+            } else if (broken || pd.uses >= maxUses || !reset(pd.driver)) {
+                // Next lease starts a fresh driver in this slot
+                log.info("Replacing driver after " + pd.uses + " uses" + (broken ? " (broken)" : ""));
+                discard(pd);
+            } else {
+                idle.add(pd);
+            }
+        } finally {
+            slots.release();
+        }
+    }
+
+    // Clear cookies and park on about:blank so the next lease starts from a clean page
+    private boolean reset(WebDriver webDriver) {
+        try {
+            webDriver.manage().deleteAllCookies();
+            webDriver.get("about:blank");
+            return true;
+        } catch (Exception e) {
+            log.warn("Driver reset failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void discard(PooledDriver pd) {
+        all.remove(pd);
+        try {
+            pd.driver.quit();
+        } catch (Exception e) {
+            log.warn("Error quitting driver: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (PooledDriver pd : all) discard(pd);
+        idle.clear();
+    }
+
+    private static class PooledDriver {
+        final WebDriver driver;
+        int uses = 0;
+
+        PooledDriver(WebDriver driver) {
+            this.driver = driver;
+        }
+    }
+
+    public class Lease implements AutoCloseable {
+        private final PooledDriver pd;
+        private boolean broken = false;
+        private boolean returned = false;
+
+        private Lease(PooledDriver pd) {
+            this.pd = pd;
+        }
+
+        public WebDriver driver() {
+            return pd.driver;
+        }
+
+        // Call when the driver crashed or hung; it will be quit instead of reused
+        public void markBroken() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (returned) return;
+            returned = true;
+            giveBack(pd, broken);
+        }
+    }
+}
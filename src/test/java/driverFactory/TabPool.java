@@ -0,0 +1,293 @@
+package driverFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WindowType;
+import utilities.Metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Like DriverPool, but each Chrome hosts several tabs and a worker leases a tab rather than a browser,
+// so more pages load at once in the same memory. A driver session runs one command at a time against
+// its current window, so every command sequence takes the browser's lock and switches to its tab first.
+// Navigation is started from JavaScript, which returns at once; the load itself runs in parallel
+// with the other tabs and is polled for without holding the lock.
+public class TabPool implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(TabPool.class.getName());
+
+    private static final long READY_POLL_MS = 100;
+    private static final String NAVIGATE_SCRIPT = "window.location.href = arguments[0];";
+    // Navigation from about:blank has committed, the DOM is parsed and the selector matches
+    private static final String READY_SCRIPT =
+            "return location.href !== 'about:blank' && document.readyState !== 'loading'" +
+            " && document.querySelector(arguments[0]) !== null;";
+
+    private final boolean headless;
+    private final int browsers;
+    private final int tabsPerBrowser;
+    private final int maxUses;
+
+    // One permit per tab slot; idle holds open tabs parked on about:blank
+    private final Semaphore slots;
+    private final ConcurrentLinkedQueue<Tab> idle = new ConcurrentLinkedQueue<>();
+    private final Set<Browser> all = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock startLock = new ReentrantLock();
+    private volatile boolean closed = false;
+
+    private final Metrics.Counter tabsRecycled =
+            Metrics.counter("scraper_tabs_recycled_total", "Browser tabs closed and reopened after an error");
+
+    // maxUses counts page loads per browser, over all of its tabs
+    public TabPool(int browsers, int tabsPerBrowser, int maxUses, boolean headless) {
+        this.browsers = browsers;
+        this.tabsPerBrowser = tabsPerBrowser;
+        this.maxUses = maxUses;
+        this.headless = headless;
+        this.slots = new Semaphore(browsers * tabsPerBrowser, true);
+        Metrics.gauge("scraper_tabs_active", "Browser tabs currently leased", () -> browsers * tabsPerBrowser - slots.availablePermits());
+        Metrics.gauge("scraper_browsers_started", "Pooled browsers currently running", all::size);
+    }
+
+    public int capacity() {
+        return browsers * tabsPerBrowser;
+    }
+
+    // Start all browsers and their tabs up front, in parallel
+    public void preWarm() throws InterruptedException {
+        ExecutorService starter = Executors.newFixedThreadPool(browsers);
+        List<Future<Browser>> started = new ArrayList<>();
+        for (int i = all.size(); i < browsers; i++) {
+            started.add(starter.submit(this::startBrowser));
+        }
+        for (Future<Browser> f : started) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                log.warn("Could not pre-warm browser: " + e.getCause().getMessage());
+            }
+        }
+        starter.shutdown();
+        log.info("Tab pool ready: " + all.size() + "/" + browsers + " browsers, " + idle.size() + " tabs");
+    }
+
+    public Lease lease() throws InterruptedException {
+        if (closed) throw new IllegalStateException("Tab pool is closed");
+        slots.acquire();
+        try {
+            Tab tab = null;
+            while (tab == null) {
+                tab = idle.poll();
+                if (tab != null && !tab.browser.acquire()) {
+                    tab = null; // left over from a browser being replaced
+                } else if (tab == null) {
+                    // Every open tab is leased or went with a retired browser: open another browser
+                    startLock.lock();
+                    try {
+                        if (idle.isEmpty()) startBrowser();
+                    } finally {
+                        startLock.unlock();
+                    }
+                }
+            }
+            return new Lease(tab);
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    private Browser startBrowser() {
+        Browser browser = new Browser(BrowserFactory.newDriver(headless));
+        all.add(browser);
+        browser.lock.lock();
+        try {
+            idle.add(new Tab(browser, browser.driver.getWindowHandle()));
+            for (int i = 1; i < tabsPerBrowser; i++) {
+                WebDriver tab = browser.driver.switchTo().newWindow(WindowType.TAB);
+                idle.add(new Tab(browser, tab.getWindowHandle()));
+            }
+        } finally {
+            browser.lock.unlock();
+        }
+        return browser;
+    }
+
+    private void giveBack(Tab tab, boolean broken) {
+        Browser browser = tab.browser;
+        try {
+            if (!closed && !browser.retired && broken) tab = recycle(tab);
+            if (!closed && !browser.retired && tab != null && park(tab)) {
+                idle.add(tab);
+            } else {
+                browser.retired = true;
+            }
+        } finally {
+            // The last tab of a retired browser out of use quits it; its other idle tabs are dropped
+            if (browser.release()) discard(browser);
+            slots.release();
+        }
+    }
+
+    // Close the failed tab and open a fresh one in the same browser; null if the browser itself is gone
+    private Tab recycle(Tab tab) {
+        Browser browser = tab.browser;
+        browser.lock.lock();
+        try {
+            browser.driver.switchTo().window(tab.handle);
+            browser.driver.close();
+            WebDriver fresh = browser.driver.switchTo().newWindow(WindowType.TAB);
+            tabsRecycled.inc();
+            return new Tab(browser, fresh.getWindowHandle());
+        } catch (Exception e) {
+            log.warn("Tab recycle failed, replacing the browser: " + e.getMessage());
+            return null;
+        } finally {
+            browser.lock.unlock();
+        }
+    }
+
+    // Back to about:blank so the next lease's ready check can't see the previous recipe
+    private boolean park(Tab tab) {
+        if (tab.browser.uses.get() >= maxUses) {
+            log.info("Replacing browser after " + tab.browser.uses.get() + " page loads");
+            return false;
+        }
+        try {
+            tab.call(d -> {
+                d.get("about:blank");
+                return null;
+            });
+            return true;
+        } catch (Exception e) {
+            log.warn("Tab reset failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void discard(Browser browser) {
+        if (!all.remove(browser)) return;
+        idle.removeIf(t -> t.browser == browser);
+        try {
+            browser.driver.quit();
+        } catch (Exception e) {
+            log.warn("Error quitting browser: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Browser browser : all) discard(browser);
+        idle.clear();
+    }
+
+    private static class Browser {
+        final WebDriver driver;
+        final ReentrantLock lock = new ReentrantLock();
+        final AtomicInteger leased = new AtomicInteger();
+        final AtomicInteger uses = new AtomicInteger();
+        volatile boolean retired = false;
+
+        Browser(WebDriver driver) {
+            this.driver = driver;
+        }
+
+        // Counts a lease unless the browser is retired. Under the lock, so a concurrent release()
+        // can't find it unleased and quit it between the check and the count.
+        boolean acquire() {
+            lock.lock();
+            try {
+                if (retired) return false;
+                leased.incrementAndGet();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // True when this was the last lease of a retired browser, which the caller then quits
+        boolean release() {
+            lock.lock();
+            try {
+                return leased.decrementAndGet() == 0 && retired;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class Tab {
+        final Browser browser;
+        final String handle;
+
+        Tab(Browser browser, String handle) {
+            this.browser = browser;
+            this.handle = handle;
+        }
+
+        // Runs fn with the driver switched to this tab, holding the browser for the duration
+        <T> T call(Function<WebDriver, T> fn) {
+            browser.lock.lock();
+            try {
+                WebDriver driver = browser.driver;
+                driver.switchTo().window(handle);
+                return fn.apply(driver);
+            } finally {
+                browser.lock.unlock();
+            }
+        }
+    }
+
+    public class Lease implements AutoCloseable {
+        private final Tab tab;
+        private boolean broken = false;
+        private boolean returned = false;
+
+        private Lease(Tab tab) {
+            this.tab = tab;
+        }
+
+        // Starts loading url and returns without waiting for it
+        public void navigate(String url) {
+            tab.browser.uses.incrementAndGet();
+            tab.call(d -> ((JavascriptExecutor) d).executeScript(NAVIGATE_SCRIPT, url));
+        }
+
+        // Polls until the page matches readySelector; false on timeout
+        public boolean awaitReady(String readySelector, Duration timeout) throws InterruptedException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (true) {
+                Object ready = tab.call(d -> ((JavascriptExecutor) d).executeScript(READY_SCRIPT, readySelector));
+                if (Boolean.TRUE.equals(ready)) return true;
+                if (System.nanoTime() >= deadline) return false;
+                Thread.sleep(READY_POLL_MS);
+            }
+        }
+
+        // Reads the page: fn gets the driver switched to this tab and must not keep it
+        public <T> T call(Function<WebDriver, T> fn) {
+            return tab.call(fn);
+        }
+
+        // Call when the tab errored or hung; it is closed and replaced by a new tab
+        public void markBroken() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (returned) return;
+            returned = true;
+            giveBack(tab, broken);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package pages;
+
+import commons.PageArchive;
+import commons.Recipe;
+
+import java.io.IOException;
+
+// Replays archived detail pages through the browserless extraction (RecipeDetailsDocument),
+// no network or browser involved
+public class ArchiveRecipeExtractor implements RecipeExtractor {
+
+    private final PageArchive.Reader archive;
+
+    public ArchiveRecipeExtractor(PageArchive.Reader archive) {
+        this.archive = archive;
+    }
+
+    @Override
+    public Recipe extract(String url) throws IOException {
+        String html = archive.read(url);
+        if (html == null) throw new IOException("Not in archive: " + url);
+        return HttpRecipeExtractor.parse(html, url);
+    }
+}
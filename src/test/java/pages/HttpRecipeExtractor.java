@@ -0,0 +1,116 @@
+package pages;
+
+import commons.PageArchive;
+import commons.Recipe;
+import commons.RecipeFingerprint;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import utilities.HostThrottle;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+// Fetches the server-rendered page with a plain HTTP client and parses it with jsoup, no browser involved
+public class HttpRecipeExtractor implements RecipeExtractor {
+
+    private static final String USER_AGENT =
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/140.0 Safari/537.36";
+
+    // HttpClient is thread-safe and keeps connections alive, so all workers share one
+    private static final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    private final HostThrottle throttle;
+    private final PageArchive.Writer archive;
+
+    public HttpRecipeExtractor() {
+        this(HostThrottle.unlimited());
+    }
+
+    public HttpRecipeExtractor(HostThrottle throttle) {
+        this(throttle, null);
+    }
+
+    public HttpRecipeExtractor(HostThrottle throttle, PageArchive.Writer archive) {
+        this.throttle = throttle;
+        this.archive = archive;
+    }
+
+    @Override
+    public Recipe extract(String url) throws IOException, InterruptedException {
+        return extractIfChanged(url, null);
+    }
+
+    // Sends the stored ETag / Last-Modified as a conditional GET; a 304 means unchanged and returns null
+    @Override
+    public Recipe extractIfChanged(String url, RecipeFingerprint known) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = request(url);
+        if (known != null) {
+            if (!known.etag.isEmpty()) builder.header("If-None-Match", known.etag);
+            if (!known.lastModified.isEmpty()) builder.header("If-Modified-Since", known.lastModified);
+        }
+
+        HttpResponse<String> response = send(builder, url, throttle);
+        if (response.statusCode() == 304) {
+            return null;
+        }
+        if (response.statusCode() != 200) {
+            throw new HttpStatusException("HTTP " + response.statusCode() + " for " + url, response.statusCode(), url);
+        }
+        if (archive != null) archive.appendQuietly(PageArchive.DETAIL, url, response.body());
+        Recipe r = parse(response.body(), response.uri().toString());
+        r.ETag = response.headers().firstValue("ETag").orElse("");
+        r.Last_Modified = response.headers().firstValue("Last-Modified").orElse("");
+        return r;
+    }
+
+    // Plain GET of any page on the site through the shared client (used for listing pages)
+    public static Document fetchDocument(String url, HostThrottle throttle) throws IOException, InterruptedException {
+        return fetchDocument(url, throttle, null, PageArchive.LISTING);
+    }
+
+    public static Document fetchDocument(String url, HostThrottle throttle, PageArchive.Writer archive, byte kind)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = send(request(url), url, throttle);
+        if (response.statusCode() != 200) {
+            throw new HttpStatusException("HTTP " + response.statusCode() + " for " + url, response.statusCode(), url);
+        }
+        if (archive != null) archive.appendQuietly(kind, url, response.body());
+        return Jsoup.parse(response.body(), response.uri().toString());
+    }
+
+    private static HttpRequest.Builder request(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(40))
+                .header("User-Agent", USER_AGENT)
+                .header("Accept", "text/html")
+                .GET();
+    }
+
+    private static HttpResponse<String> send(HttpRequest.Builder builder, String url, HostThrottle throttle)
+            throws IOException, InterruptedException {
+        try (HostThrottle.Permit permit = throttle.acquire(url)) {
+            HttpResponse<String> response;
+            try {
+                response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+            } catch (IOException e) {
+                permit.markFailed();
+                throw e;
+            }
+            // Throttling and server errors mean the host is overloaded
+            if (response.statusCode() == 429 || response.statusCode() >= 500) permit.markFailed();
+            return response;
+        }
+    }
+
+    public static Recipe parse(String html, String url) {
+        return new RecipeDetailsDocument(Jsoup.parse(html, url)).scrapeRecipe();
+    }
+}
@@ -0,0 +1,278 @@
+package pages;
+
+import commons.PageArchive;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.HttpStatusException;
+import utilities.HostThrottle;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+// Listing discovery by page URL instead of clicking Next: the page-number query parameter is derived
+// from page 1's Next link, then many listing pages are fetched over HTTP at once and their recipe URLs
+// handed to the caller as each page arrives. detect() returns null when the pattern can't be determined,
+// and the caller falls back to click-based pagination.
+public class ListingDiscovery {
+    private static final Logger log = LogManager.getLogger(ListingDiscovery.class.getName());
+
+    public interface PageSink {
+        // Called on the thread running run(), so the sink needs no synchronization
+        void accept(int page, String pageUrl, List<String> recipeUrls) throws InterruptedException;
+    }
+
+    // A listing page that fails is fetched again this many times before the listing is left incomplete
+    private static final int PAGE_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MS = 500;
+
+    private final String startUrl;
+    private final String pageParam;
+    private final int lastPage;             // from an explicit Last link, -1 if there is none
+    private final HostThrottle throttle;
+    private final PageArchive.Writer archive;   // null unless scraper.archiveDir is set
+    private final List<String> firstPageUrls;
+    private final boolean firstPageHasNext;
+
+    // Lowest page not yet fetched successfully, i.e. where a resumed crawl should start
+    private int resumePage;
+
+    private ListingDiscovery(String startUrl, String pageParam, int lastPage, HostThrottle throttle,
+                             PageArchive.Writer archive, List<String> firstPageUrls, boolean firstPageHasNext) {
+        this.startUrl = startUrl;
+        this.pageParam = pageParam;
+        this.lastPage = lastPage;
+        this.throttle = throttle;
+        this.archive = archive;
+        this.firstPageUrls = firstPageUrls;
+        this.firstPageHasNext = firstPageHasNext;
+    }
+
+    // forcedParam (scraper.discovery.pageParam) skips detection of the parameter name
+    public static ListingDiscovery detect(String startUrl, HostThrottle throttle, String forcedParam) throws InterruptedException {
+        return detect(startUrl, throttle, forcedParam, null);
+    }
+
+    // archive, when set, receives every listing page fetched
+    public static ListingDiscovery detect(String startUrl, HostThrottle throttle, String forcedParam,
+                                          PageArchive.Writer archive) throws InterruptedException {
+        RecipeListingDocument first;
+        try {
+            first = new RecipeListingDocument(HttpRecipeExtractor.fetchDocument(startUrl, throttle, archive, PageArchive.LISTING));
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) throw (InterruptedException) e;
+            log.warn("Listing page not fetchable over HTTP (" + e.getMessage() + "), using click pagination");
+            return null;
+        }
+        List<String> urls = first.getRecipeUrls();
+        if (urls.isEmpty()) {
+            log.warn("No recipe links in the server-rendered listing, using click pagination");
+            return null;
+        }
+        String param = (forcedParam != null && !forcedParam.isEmpty())
+                ? forcedParam : pageParameter(startUrl, first.getNextPageUrl());
+        if (param == null) {
+            log.warn("Could not derive a page-number parameter from " + first.getNextPageUrl() + ", using click pagination");
+            return null;
+        }
+        // Only an explicit Last link says where the listing ends; the page numbers shown may be a window
+        int lastPage = pageNumber(first.getLastPageUrl(), param);
+        int shown = first.getHighestPageNumberShown();
+        log.info("Listing pages are " + pageUrl(startUrl, param, 2).replace("=2", "=N")
+                + (lastPage > 0 ? ", last page " + lastPage : shown > 0 ? ", at least " + shown + " pages" : ""));
+        return new ListingDiscovery(startUrl, param, lastPage, throttle, archive, urls, first.getNextPageUrl() != null);
+    }
+
+    // Value of param in url, or -1 when url is null or the value is not a page number
+    private static int pageNumber(String url, String param) {
+        if (url == null) return -1;
+        String value = queryParams(url).get(param);
+        return (value != null && value.matches("\\d{1,6}")) ? Integer.parseInt(value) : -1;
+    }
+
+    // The query parameter that is 2 on the Next link of page 1 and absent or 1 on page 1 itself
+    public static String pageParameter(String pageOneUrl, String nextUrl) {
+        if (nextUrl == null) return null;
+        Map<String, String> current = queryParams(pageOneUrl);
+        for (Map.Entry<String, String> e : queryParams(nextUrl).entrySet()) {
+            String before = current.get(e.getKey());
+            if ("2".equals(e.getValue()) && (before == null || "1".equals(before))) return e.getKey();
+        }
+        return null;
+    }
+
+    private static Map<String, String> queryParams(String url) {
+        Map<String, String> params = new LinkedHashMap<>();
+        String query = URI.create(url).getRawQuery();
+        if (query == null) return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    public static String pageUrl(String startUrl, String param, int page) {
+        URI uri = URI.create(startUrl);
+        StringBuilder query = new StringBuilder();
+        String raw = uri.getRawQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                String key = pair.contains("=") ? pair.substring(0, pair.indexOf('=')) : pair;
+                if (key.equals(param) || pair.isEmpty()) continue;
+                query.append(query.length() == 0 ? "" : "&").append(pair);
+            }
+        }
+        query.append(query.length() == 0 ? "" : "&").append(param).append('=').append(page);
+        String base = startUrl.contains("?") ? startUrl.substring(0, startUrl.indexOf('?')) : startUrl;
+        if (base.contains("#")) base = base.substring(0, base.indexOf('#'));
+        return base + "?" + query;
+    }
+
+    public String pageUrl(int page) {
+        return pageUrl(startUrl, pageParam, page);
+    }
+
+    // Fetches pages fromPage.. with up to parallelism requests in flight and feeds each to the sink.
+    // The listing ends at the first page without a Next link (or without recipes, answered 404/410, or at
+    // an explicit Last link); pages are requested ahead of that speculatively, and those found to be past
+    // the end are dropped. A failed page is fetched again up to PAGE_ATTEMPTS times; once one has failed
+    // for good and no later page has been read, no new pages are started. Returns true when the listing
+    // was read to the end without a page left unfetched; false when stop said so or a page kept failing,
+    // in which case getResumePage() is at or below the missing page.
+    public boolean run(int fromPage, int parallelism, BooleanSupplier stop, PageSink sink) throws InterruptedException {
+        ExecutorService fetchers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "listing-fetcher");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<PageResult> done = new ExecutorCompletionService<>(fetchers);
+        TreeSet<Integer> fetched = new TreeSet<>();
+        Deque<PageResult> retries = new ArrayDeque<>();
+        resumePage = fromPage;
+        int endPage = lastPage > 0 ? lastPage : Integer.MAX_VALUE;
+        int nextPage = fromPage;
+        int inFlight = 0;
+        boolean failedPage = false;
+        int highestRead = 0;                    // highest page read successfully
+        int issueLimit = Integer.MAX_VALUE;     // a page that failed for good with nothing read after it
+
+        try {
+            if (fromPage == 1) {
+                sink.accept(1, startUrl, firstPageUrls);
+                fetched.add(1);
+                advanceResumePage(fetched);
+                if (!firstPageHasNext) endPage = 1;
+                nextPage = 2;
+            }
+            while (true) {
+                while (!stop.getAsBoolean() && inFlight < parallelism) {
+                    PageResult retry = retries.poll();
+                    if (retry != null) {
+                        if (retry.page > endPage) continue;
+                        int attempt = retry.attempt + 1;
+                        done.submit(() -> fetchPage(retry.page, attempt));
+                    } else if (nextPage <= endPage && nextPage <= issueLimit) {
+                        int page = nextPage++;
+                        done.submit(() -> fetchPage(page, 1));
+                    } else {
+                        break;
+                    }
+                    inFlight++;
+                }
+                if (inFlight == 0) break;
+
+                PageResult result = done.take().get();
+                inFlight--;
+                if (result.page > endPage) {
+                    // Requested before the end was known
+                    fetched.add(result.page);
+                    advanceResumePage(fetched);
+                    continue;
+                }
+                if (result.error != null && !isPastEnd(result.error)) {
+                    if (result.attempt < PAGE_ATTEMPTS) {
+                        log.warn("Listing page " + result.page + " failed (" + result.error.getMessage() + "), retrying");
+                        retries.add(result);
+                    } else {
+                        failedPage = true;
+                        // Without a later page to show the listing goes on, this may be the end on a site
+                        // that fails past it, so stop requesting further pages
+                        if (highestRead < result.page) issueLimit = Math.min(issueLimit, result.page);
+                        log.warn("Listing page " + result.page + " failed " + result.attempt + " times ("
+                                + result.error.getMessage() + "), listing left incomplete");
+                    }
+                    continue;
+                }
+                if (result.recipeUrls.isEmpty()) {
+                    // Past the end (no recipes, or 404/410): don't start any later pages
+                    endPage = Math.min(endPage, result.page - 1);
+                } else {
+                    highestRead = Math.max(highestRead, result.page);
+                    if (highestRead > issueLimit) issueLimit = Integer.MAX_VALUE;
+                    if (!result.hasNext) endPage = Math.min(endPage, result.page);
+                    if (!stop.getAsBoolean()) sink.accept(result.page, result.url, result.recipeUrls);
+                }
+                fetched.add(result.page);
+                advanceResumePage(fetched);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            fetchers.shutdownNow();
+        }
+        return !failedPage && !stop.getAsBoolean() && endPage != Integer.MAX_VALUE && resumePage > endPage;
+    }
+
+    // Sites that answer past the last page with Not Found / Gone rather than an empty listing
+    private static boolean isPastEnd(Exception error) {
+        if (!(error instanceof HttpStatusException)) return false;
+        int status = ((HttpStatusException) error).getStatusCode();
+        return status == 404 || status == 410;
+    }
+
+    private void advanceResumePage(TreeSet<Integer> fetched) {
+        while (fetched.remove(resumePage)) resumePage++;
+    }
+
+    public int getResumePage() {
+        return resumePage;
+    }
+
+    private PageResult fetchPage(int page, int attempt) throws InterruptedException {
+        String url = pageUrl(page);
+        if (attempt > 1) Thread.sleep(RETRY_BACKOFF_MS * (attempt - 1));
+        try {
+            RecipeListingDocument doc = new RecipeListingDocument(
+                    HttpRecipeExtractor.fetchDocument(url, throttle, archive, PageArchive.LISTING));
+            return new PageResult(page, attempt, url, doc.getRecipeUrls(), doc.getNextPageUrl() != null, null);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            return new PageResult(page, attempt, url, List.of(), false, e);
+        }
+    }
+
+    private static class PageResult {
+        final int page;
+        final int attempt;
+        final String url;
+        final List<String> recipeUrls;
+        final boolean hasNext;
+        final Exception error;
+
+        PageResult(int page, int attempt, String url, List<String> recipeUrls, boolean hasNext, Exception error) {
+            this.page = page;
+            this.attempt = attempt;
+            this.url = url;
+            this.recipeUrls = recipeUrls;
+            this.hasNext = hasNext;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package pages;
+
+import commons.Recipe;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.Elements;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+// Browserless counterpart of RecipeDetailsPage: same locators, applied to an already fetched HTML document
+public class RecipeDetailsDocument {
+
+    private final Document doc;
+    private static final Logger logger = Logger.getLogger(RecipeDetailsDocument.class.getName());
+
+    // ----------------- Locators (keep in sync with RecipeDetailsPage) -----------------
+    private static final String RECIPE_NAME = "//h1[@class='rec-heading']/span";
+    private static final String INGREDIENTS = "#ingredients";
+    private static final String PREPARATION_TIME = "//div[h6[text()='Preparation Time']]/p";
+    private static final String COOKING_TIME = "//div[contains(@class,'content-last')]//p/strong";
+    private static final String RECIPE_DESCRIPTION = "#aboutrecipe";
+    private static final String PREP_STEPS = "#methods";
+    private static final String NUTRIENT_ROWS = "//figure[@class='table']";
+    private static final String TAGS = "//ul[@class='tags-list']/li/a";
+    private static final String FOOD_CATEGORY = "p:nth-child(1) span:nth-child(3) a:nth-child(1)";
+    private static final String SERVINGS = "//div[h6[normalize-space(text())='Makes']]/p/strong";
+    private static final String CUISINE = "//p/span[3]/a";
+
+    // Elements that WebDriver's getText() renders on their own line
+    private static final Set<String> BLOCK_TAGS = Set.of(
+            "p", "div", "li", "ul", "ol", "tr", "table", "tbody", "figure", "section", "article",
+            "h1", "h2", "h3", "h4", "h5", "h6", "br", "header", "footer");
+
+    public RecipeDetailsDocument(Document doc) {
+        this.doc = doc;
+    }
+
+    private Element first(Elements elements) {
+        return elements.isEmpty() ? null : elements.first();
+    }
+
+    private String getText(Element element, String fieldName) {
+        if (element == null) {
+            logger.warning("Element not found: " + fieldName);
+            return "";
+        }
+        return visibleText(element).trim();
+    }
+
+    private List<String> getTextList(Elements elements, String fieldName) {
+        List<String> texts = new ArrayList<>();
+        if (elements.isEmpty()) {
+            logger.warning("No elements found for: " + fieldName);
+            return texts;
+        }
+        for (Element el : elements) {
+            String text = visibleText(el).trim();
+            if (!text.isEmpty()) texts.add(text.toLowerCase());
+        }
+        return texts;
+    }
+
+    // Approximates WebDriver getText(): block elements start a new line, runs of whitespace collapse
+    static String visibleText(Element element) {
+        StringBuilder sb = new StringBuilder();
+        appendVisibleText(element, sb);
+        String[] lines = sb.toString().split("\n");
+        StringBuilder out = new StringBuilder();
+        for (String line : lines) {
+            String collapsed = line.replaceAll("[\\s\\u00a0]+", " ").trim();
+            if (collapsed.isEmpty()) continue;
+            if (out.length() > 0) out.append('\n');
+            out.append(collapsed);
+        }
+        return out.toString();
+    }
+
+    private static void appendVisibleText(Node node, StringBuilder sb) {
+        for (Node child : node.childNodes()) {
+            if (child instanceof TextNode) {
+                sb.append(((TextNode) child).getWholeText());
+            } else if (child instanceof Element) {
+                Element el = (Element) child;
+                String tag = el.normalName();
+                if (tag.equals("script") || tag.equals("style")) continue;
+                boolean block = BLOCK_TAGS.contains(tag);
+                if (block) sb.append('\n');
+                if (tag.equals("td") || tag.equals("th")) sb.append(' ');
+                appendVisibleText(el, sb);
+                if (block) sb.append('\n');
+            }
+        }
+    }
+
+    // Fetch nutrition table and join as a single string with delimiter
+    public String getNutritionValues(String delimiter) {
+        Element nutritionTable = first(doc.selectXpath(NUTRIENT_ROWS));
+        if (nutritionTable == null) {
+            logger.warning("Nutrition table not found");
+            return "";
+        }
+
+        List<String> pairs = new ArrayList<>();
+        for (Element row : nutritionTable.select("tr")) {
+            Elements cols = row.select("td");
+            if (cols.size() >= 2) {
+                pairs.add(visibleText(cols.get(0)).trim() + ":" + visibleText(cols.get(1)).trim());
+            }
+        }
+        return String.join(delimiter, pairs);
+    }
+
+    // ----------------- Scraper -----------------
+    public Recipe scrapeRecipe() {
+        Recipe r = new Recipe();
+
+        r.Recipe_Name        = getText(first(doc.selectXpath(RECIPE_NAME)), "Recipe_Name");
+        r.Ingredients        = getTextList(doc.select(INGREDIENTS), "Ingredients");
+        r.Preparation_Time   = getText(first(doc.selectXpath(PREPARATION_TIME)), "Preparation_Time");
+        r.Cooking_Time       = getText(first(doc.selectXpath(COOKING_TIME)), "Cooking_Time");
+        r.Recipe_Description = getText(doc.selectFirst(RECIPE_DESCRIPTION), "Recipe_Description");
+        r.Preparation_method = String.join(" ", getTextList(doc.select(PREP_STEPS), "Preparation_method"));
+        r.Nutrient_values    = getNutritionValues("|");
+        r.Recipe_URL         = doc.location();
+        r.Recipe_Category    = getRecipeCategories();
+        r.Food_Category      = getText(doc.selectFirst(FOOD_CATEGORY), "Food_Category");
+        r.Tag                = getText(first(doc.selectXpath(TAGS)), "Tag");
+        r.No_of_servings     = getText(first(doc.selectXpath(SERVINGS)), "No_of_servings");
+        r.Cuisine_category   = getText(first(doc.selectXpath(CUISINE)), "Cuisine_category");
+
+        return r;
+    }
+
+    //Recipe category
+    private String getRecipeCategories() {
+        for (Element el : doc.selectXpath(TAGS)) {
+            String text = visibleText(el).trim().toLowerCase();
+            if (text.contains("breakfast") || text.contains("lunch") || text.contains("dinner") || text.contains("snack")) {
+                return text;
+            }
+        }
+        return "other";
+    }
+}
@@ -1,14 +1,26 @@
 package pages;
 
 import commons.Recipe;
+import driverFactory.BrowserFactory;
+import driverFactory.BrowserProfile;
 
 import org.openqa.selenium.By;
 
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.*;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+import org.openqa.selenium.support.ui.WebDriverWait;
+import utilities.FieldStats;
+import utilities.PageLoadStats;
+
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -17,6 +29,22 @@ public class RecipeDetailsPage {
     private final WebDriver driver;
     private static final Logger logger = Logger.getLogger(RecipeDetailsPage.class.getName());
 
+    // Waited for once per page; optional fields are then looked up with no implicit wait,
+    // so a recipe without servings or a nutrition table doesn't block 10s on each of them
+    private static final Duration PAGE_READY_TIMEOUT = Duration.ofSeconds(15);
+
+    // Bytes and requests so far from the Resource Timing entries, and ms from navigation start to the
+    // end of DOMContentLoaded, when the server-rendered recipe became readable. Taken from the page's own
+    // timing rather than performance.now() after the wait, which would add the wait's polling and round
+    // trips. Cross-origin responses without Timing-Allow-Origin report a transferSize of 0.
+    private static final String LOAD_STATS_SCRIPT =
+            "var n = performance.getEntriesByType('navigation')[0];" +
+            "var r = performance.getEntriesByType('resource');" +
+            "var bytes = n ? n.transferSize : 0;" +
+            "for (var i = 0; i < r.length; i++) bytes += r[i].transferSize || 0;" +
+            "var ready = n && n.domContentLoadedEventEnd > 0 ? n.domContentLoadedEventEnd : performance.now();" +
+            "return [bytes, r.length + 1, ready];";
+
     // ----------------- Locators -----------------
     @FindBy(xpath = "//h1[@class='rec-heading']/span" )
     private WebElement recipeName;
@@ -60,31 +88,78 @@ public class RecipeDetailsPage {
         PageFactory.initElements(driver, this);
     }
 
-   
+    // Page-ready signal: the heading or ingredient list is in the DOM. Returns false on timeout,
+    // in which case the fields are still read (and come back missing) without further waiting.
+    public boolean waitForPageReady() {
+        long start = System.nanoTime();
+        boolean ready;
+        BrowserProfile profile = BrowserFactory.getProfile();
+        try {
+            new WebDriverWait(driver, PAGE_READY_TIMEOUT)
+                    .until(ExpectedConditions.presenceOfElementLocated(By.cssSelector(profile.readySelector)));
+            ready = true;
+        } catch (TimeoutException e) {
+            logger.warning("Page not ready after " + PAGE_READY_TIMEOUT.getSeconds() + "s: " + driver.getCurrentUrl());
+            ready = false;
+        }
+        FieldStats.record("(page ready)", ready, System.nanoTime() - start);
+        if (ready) recordPageLoad(profile);
+        return ready;
+    }
+
+    // For pages waited for elsewhere, e.g. by a TabPool lease
+    public void recordPageLoad() {
+        recordPageLoad(BrowserFactory.getProfile());
+    }
+
+    // With the eager strategy, resources still loading when the page became readable are not counted:
+    // the figure is what the page cost before it could be read
+    private void recordPageLoad(BrowserProfile profile) {
+        try {
+            Object result = ((JavascriptExecutor) driver).executeScript(LOAD_STATS_SCRIPT);
+            if (!(result instanceof List<?> values) || values.size() < 3) return;
+            long bytes = ((Number) values.get(0)).longValue();
+            long requests = ((Number) values.get(1)).longValue();
+            long readyNanos = (long) (((Number) values.get(2)).doubleValue() * 1_000_000);
+            PageLoadStats.record(profile.name(), bytes, requests, readyNanos);
+        } catch (WebDriverException | ClassCastException e) {
+            logger.fine("Page load stats unavailable: " + e.getMessage());
+        }
+    }
+
     private String getText(WebElement element, String fieldName) {
+        long start = System.nanoTime();
         if (element == null) {
             logger.warning("Element not found: " + fieldName);
+            FieldStats.record(fieldName, false, System.nanoTime() - start);
             return "";
         }
         try {
-            return element.getText().trim();
+            String text = element.getText().trim();
+            FieldStats.record(fieldName, true, System.nanoTime() - start);
+            return text;
         } catch (Exception e) {
             logger.warning("Error reading field: " + fieldName);
+            FieldStats.record(fieldName, false, System.nanoTime() - start);
             return "";
         }
     }
 
     private List<String> getTextList(List<WebElement> elements, String fieldName) {
+        long start = System.nanoTime();
         if (elements == null || elements.isEmpty()) {
             logger.warning("No elements found for: " + fieldName);
+            FieldStats.record(fieldName, false, System.nanoTime() - start);
             return new ArrayList<>();
         }
-        return elements.stream()
+        List<String> texts = elements.stream()
                 .map(WebElement::getText)
                 .map(String::trim)
                 .filter(s -> !s.isEmpty())
                 .map(String::toLowerCase)
                 .collect(Collectors.toList());
+        FieldStats.record(fieldName, true, System.nanoTime() - start);
+        return texts;
     }
 
     private String joinTexts(List<WebElement> elements, String delimiter, String fieldName) {
@@ -95,11 +170,14 @@ public class RecipeDetailsPage {
     // Fetch nutrition table and join as a single string with delimiter
     public String getNutritionValues(String delimiter) {
         StringBuilder nutritionBuilder = new StringBuilder();
+        long start = System.nanoTime();
+        boolean found = false;
 
         try {
             // Locate the nutrition table
             WebElement nutritionTable = nutrientRows;
             List<WebElement> rows = nutritionTable.findElements(By.tagName("tr"));
+            found = true;
 
             for (WebElement row : rows) {
                 List<WebElement> cols = row.findElements(By.tagName("td"));
@@ -121,6 +199,7 @@ public class RecipeDetailsPage {
         } catch (Exception e) {
             logger.warning("Nutrition table not found or error occurred: " + e.getMessage());
         }
+        FieldStats.record("Nutrient_values", found, System.nanoTime() - start);
 
         return nutritionBuilder.toString();
     }
@@ -128,8 +207,131 @@ public class RecipeDetailsPage {
 
 
 
+    // ----------------- Single round trip -----------------
+    // Same locators as the @FindBy fields above, evaluated in the page so that every field comes back
+    // from one executeScript call instead of one or more driver round trips per field
+    private static final String EXTRACT_SCRIPT =
+            "function x(p){return document.evaluate(p,document,null,XPathResult.FIRST_ORDERED_NODE_TYPE,null).singleNodeValue;}" +
+            "function xs(p){var r=document.evaluate(p,document,null,XPathResult.ORDERED_NODE_SNAPSHOT_TYPE,null),a=[];" +
+            "  for(var i=0;i<r.snapshotLength;i++)a.push(r.snapshotItem(i));return a;}" +
+            "function t(e){return e?e.innerText.trim():null;}" +
+            "function ts(es){return es.map(function(e){return e.innerText.trim();});}" +
+            "var rows=[],table=x(\"//figure[@class='table']\");" +
+            "if(table){table.querySelectorAll('tr').forEach(function(tr){var td=tr.querySelectorAll('td');" +
+            "  if(td.length>=2)rows.push([td[0].innerText.trim(),td[1].innerText.trim()]);});}" +
+            "return {" +
+            " name:t(x(\"//h1[@class='rec-heading']/span\"))," +
+            " ingredients:ts(Array.from(document.querySelectorAll('#ingredients')))," +
+            " prepTime:t(x(\"//div[h6[text()='Preparation Time']]/p\"))," +
+            " cookTime:t(x(\"//div[contains(@class,'content-last')]//p/strong\"))," +
+            " description:t(document.getElementById('aboutrecipe'))," +
+            " methods:ts(Array.from(document.querySelectorAll('#methods')))," +
+            " nutrients:table?rows:null," +
+            " tags:ts(xs(\"//ul[@class='tags-list']/li/a\"))," +
+            " foodCategory:t(document.querySelector('p:nth-child(1) span:nth-child(3) a:nth-child(1)'))," +
+            " servings:t(x(\"//div[h6[normalize-space(text())='Makes']]/p/strong\"))," +
+            " cuisine:t(x('//p/span[3]/a'))," +
+            " url:location.href};";
+
+    // One executeScript call for the whole recipe
+    @SuppressWarnings("unchecked")
+    public Recipe scrapeRecipeInOneCall() {
+        long start = System.nanoTime();
+        Object result = ((JavascriptExecutor) driver).executeScript(EXTRACT_SCRIPT);
+        if (!(result instanceof Map)) {
+            throw new IllegalStateException("Extraction script returned " + result);
+        }
+        Map<String, Object> page = (Map<String, Object>) result;
+        Recipe r = new Recipe();
+        FieldStats.record("(single call)", true, System.nanoTime() - start);
+
+        r.Recipe_Name        = text(page, "name", "Recipe_Name");
+        r.Ingredients        = lowerCaseNonEmpty(texts(page, "ingredients", "Ingredients"));
+        r.Preparation_Time   = text(page, "prepTime", "Preparation_Time");
+        r.Cooking_Time       = text(page, "cookTime", "Cooking_Time");
+        r.Recipe_Description = text(page, "description", "Recipe_Description");
+        r.Preparation_method = String.join(" ", lowerCaseNonEmpty(texts(page, "methods", "Preparation_method")));
+        r.Nutrient_values    = nutritionValues(page.get("nutrients"), "|");
+        r.Recipe_URL         = String.valueOf(page.get("url"));
+        List<String> tags    = texts(page, "tags", "Tag");
+        r.Recipe_Category    = recipeCategory(tags);
+        r.Food_Category      = text(page, "foodCategory", "Food_Category");
+        r.Tag                = tags.isEmpty() ? "" : tags.get(0);
+        r.No_of_servings     = text(page, "servings", "No_of_servings");
+        r.Cuisine_category   = text(page, "cuisine", "Cuisine_category");
+
+        return r;
+    }
+
+    private static String text(Map<String, Object> page, String key, String fieldName) {
+        Object value = page.get(key);
+        FieldStats.record(fieldName, value != null, 0);
+        if (value == null) {
+            logger.warning("Element not found: " + fieldName);
+            return "";
+        }
+        return value.toString().trim();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> texts(Map<String, Object> page, String key, String fieldName) {
+        Object value = page.get(key);
+        boolean found = value instanceof List && !((List<Object>) value).isEmpty();
+        FieldStats.record(fieldName, found, 0);
+        if (!found) {
+            logger.warning("No elements found for: " + fieldName);
+            return new ArrayList<>();
+        }
+        List<String> texts = new ArrayList<>();
+        for (Object o : (List<Object>) value) texts.add(String.valueOf(o).trim());
+        return texts;
+    }
+
+    private static List<String> lowerCaseNonEmpty(List<String> texts) {
+        return texts.stream()
+                .filter(s -> !s.isEmpty())
+                .map(String::toLowerCase)
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String nutritionValues(Object rows, String delimiter) {
+        FieldStats.record("Nutrient_values", rows instanceof List, 0);
+        if (!(rows instanceof List)) {
+            logger.warning("Nutrition table not found or error occurred: no table");
+            return "";
+        }
+        List<String> pairs = new ArrayList<>();
+        for (Object row : (List<Object>) rows) {
+            List<Object> cols = (List<Object>) row;
+            pairs.add(cols.get(0) + ":" + cols.get(1));
+        }
+        return String.join(delimiter, pairs);
+    }
+
     // ----------------- Scraper -----------------
+    // Waits once for the page, then one script round trip; the per-field path is kept as the fallback
+    // when the script fails. Lookups run with a zero implicit wait, restored afterwards for the pooled driver.
     public Recipe scrapeRecipe() {
+        waitForPageReady();
+        return scrapeReadyPage();
+    }
+
+    // scrapeRecipe() for a page the caller has already waited for: nothing in here waits
+    public Recipe scrapeReadyPage() {
+        Duration implicitWait = driver.manage().timeouts().getImplicitWaitTimeout();
+        driver.manage().timeouts().implicitlyWait(Duration.ZERO);
+        try {
+            return scrapeRecipeInOneCall();
+        } catch (WebDriverException | IllegalStateException | ClassCastException e) {
+            logger.warning("Single-call extraction failed, reading fields one by one: " + e.getMessage());
+            return scrapeRecipePerField();
+        } finally {
+            driver.manage().timeouts().implicitlyWait(implicitWait);
+        }
+    }
+
+    public Recipe scrapeRecipePerField() {
         Recipe r = new Recipe();
 
         r.Recipe_Name        = getText(recipeName, "Recipe_Name");
@@ -152,9 +354,16 @@ public class RecipeDetailsPage {
     //Recipe category  
     private String getRecipeCategories() 
     {
-
+        List<String> texts = new ArrayList<>();
         for (WebElement el : recipeCategory) {
-            String text = el.getText().trim().toLowerCase();
+            texts.add(el.getText().trim());
+        }
+        return recipeCategory(texts);
+    }
+
+    private static String recipeCategory(List<String> tagTexts) {
+        for (String tagText : tagTexts) {
+            String text = tagText.toLowerCase();
             if (text.contains("breakfast")||text.contains("lunch")||text.contains("dinner")||text.contains("snack"))
             {
             	return text;
@@ -163,4 +372,3 @@ public class RecipeDetailsPage {
         return "other";
     }
   }
-
@@ -0,0 +1,44 @@
+package pages;
+
+import commons.PageArchive;
+import commons.Recipe;
+import commons.RecipeFingerprint;
+import driverFactory.DriverPool;
+import driverFactory.TabPool;
+import utilities.HostThrottle;
+
+import java.io.IOException;
+
+// Loads a recipe detail page and maps it to a Recipe; one implementation per scraping backend
+public interface RecipeExtractor {
+
+    Recipe extract(String url) throws IOException, InterruptedException;
+
+    // Incremental re-crawl: returns null when the backend can tell the page is unchanged
+    // without extracting it; otherwise extracts it like extract(url)
+    default Recipe extractIfChanged(String url, RecipeFingerprint known) throws IOException, InterruptedException {
+        return extract(url);
+    }
+
+    // Backend names used by scraper.backend in Config.properties
+    static RecipeExtractor forBackend(String backend, DriverPool driverPool, HostThrottle throttle) {
+        return forBackend(backend, driverPool, throttle, null);
+    }
+
+    // archive, when set, receives the raw HTML of every page extracted
+    static RecipeExtractor forBackend(String backend, DriverPool driverPool, HostThrottle throttle, PageArchive.Writer archive) {
+        if ("http".equalsIgnoreCase(backend)) {
+            return new HttpRecipeExtractor(throttle, archive);
+        }
+        return new SeleniumRecipeExtractor(driverPool, throttle, archive);
+    }
+
+    // tabPool, when set, takes the place of driverPool for the selenium backend
+    static RecipeExtractor forBackend(String backend, DriverPool driverPool, TabPool tabPool, HostThrottle throttle,
+                                      PageArchive.Writer archive) {
+        if (tabPool != null && "selenium".equalsIgnoreCase(backend)) {
+            return new TabRecipeExtractor(tabPool, throttle, archive);
+        }
+        return forBackend(backend, driverPool, throttle, archive);
+    }
+}
@@ -0,0 +1,64 @@
+package pages;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Browserless counterpart of RecipeListingPage: same locators, applied to a fetched listing page
+public class RecipeListingDocument {
+
+    // ----------------- Locators (keep in sync with RecipeListingPage) -----------------
+    private static final String RECIPE_LINKS = "//h5/a";
+    private static final String NEXT_LINK = "//a[contains(text(),'Next') and contains(@class,'page-link')]";
+    private static final String PAGE_LINKS = "a.page-link";
+    private static final String LAST_LINK = "a.page-link[rel=last], a.page-link:matchesOwn(^\\s*(Last|»»)\\s*$)";
+
+    private final Document doc;
+
+    public RecipeListingDocument(Document doc) {
+        this.doc = doc;
+    }
+
+    // Absolute recipe URLs in page order, without duplicates
+    public List<String> getRecipeUrls() {
+        Set<String> urls = new LinkedHashSet<>();
+        for (Element a : doc.selectXpath(RECIPE_LINKS)) {
+            String href = a.absUrl("href");
+            if (!href.isEmpty()) urls.add(href);
+        }
+        return new ArrayList<>(urls);
+    }
+
+    // Absolute URL of the Next link, or null on the last page
+    public String getNextPageUrl() {
+        for (Element a : doc.selectXpath(NEXT_LINK)) {
+            String href = a.absUrl("href");
+            if (!href.isEmpty()) return href;
+        }
+        return null;
+    }
+
+    // Absolute URL of an explicit Last link, or null when the pagination bar has none
+    public String getLastPageUrl() {
+        for (Element a : doc.select(LAST_LINK)) {
+            String href = a.absUrl("href");
+            if (!href.isEmpty()) return href;
+        }
+        return null;
+    }
+
+    // Highest page number shown in the pagination bar, or -1 when it shows none. Paginators often
+    // show only a window of pages around the current one, so this is a lower bound, not the last page.
+    public int getHighestPageNumberShown() {
+        int last = -1;
+        for (Element a : doc.select(PAGE_LINKS)) {
+            String text = a.text().trim();
+            if (text.matches("\\d{1,6}")) last = Math.max(last, Integer.parseInt(text));
+        }
+        return last;
+    }
+}
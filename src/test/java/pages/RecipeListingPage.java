@@ -1,15 +1,21 @@
 package pages;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.*;
 import org.openqa.selenium.support.*;
 import utilities.ElementsUtil;
+import utilities.HostThrottle;
+import utilities.VisitedUrls;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class RecipeListingPage {
+    private static final Logger log = LogManager.getLogger(RecipeListingPage.class.getName());
 
     private WebDriver driver;
     private ElementsUtil elementsUtil;
+    private HostThrottle throttle;
 
     @FindBy(xpath = ".//h5/a")
     private List<WebElement> recipeLinks;
@@ -18,12 +24,18 @@ public class RecipeListingPage {
     private final By nextBtnLocator = By.xpath("//a[contains(text(),'Next') and contains(@class,'page-link')]");
 
     public RecipeListingPage(WebDriver driver) {
+        this(driver, HostThrottle.unlimited());
+    }
+
+    public RecipeListingPage(WebDriver driver, HostThrottle throttle) {
         this.driver = driver;
+        this.throttle = throttle;
         this.elementsUtil = new ElementsUtil(driver);
         PageFactory.initElements(driver, this);
     }
 
-    public List<String> getRecipeUrls(List<String> visitedRecipes) {
+    // Links on this page not already in the crawl's visited set, which is read in place, not copied
+    public List<String> getRecipeUrls(VisitedUrls visitedRecipes) {
         try {
             elementsUtil.waitForElementToBeVisible(recipeLinkLocator);
             return recipeLinks.stream()
@@ -31,7 +43,7 @@ public class RecipeListingPage {
                     .filter(url -> url != null && !visitedRecipes.contains(url))
                     .collect(Collectors.toList());
         } catch (TimeoutException e) {
-            System.out.println("No recipe links found on this page.");
+            log.info("No recipe links found on this page.");
             return List.of();
         }
     }
@@ -39,24 +51,30 @@ public class RecipeListingPage {
     public boolean goToNextPage() {
         try {
             if (!elementsUtil.isElementDisplayed(nextBtnLocator)) {
-                System.out.println("No Next button. Stopping pagination.");
+                log.info("No Next button. Stopping pagination.");
                 return false;
             }
 
             WebElement nextBtn = driver.findElement(nextBtnLocator);
             ((JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView(true);", nextBtn);
-            ((JavascriptExecutor) driver).executeScript("arguments[0].click();", nextBtn);
 
-            // Wait for the old "Next" button to disappear
-            elementsUtil.waitForElementToDisappear(nextBtnLocator, 10);
+            // Politeness comes from the host throttle, shared with the detail page fetches
+            try (HostThrottle.Permit permit = throttle.acquire(driver.getCurrentUrl())) {
+                try {
+                    ((JavascriptExecutor) driver).executeScript("arguments[0].click();", nextBtn);
 
-            // Optional politeness pause
-            Thread.sleep(1000);
+                    // Wait for the old "Next" button to disappear
+                    elementsUtil.waitForElementToDisappear(nextBtnLocator, 10);
+                } catch (WebDriverException e) {
+                    permit.markFailed();
+                    throw e;
+                }
+            }
 
             return true;
 
         } catch (Exception e) {
-            System.out.println("Pagination error: " + e.getMessage());
+            log.warn("Pagination error: " + e.getMessage());
             return false;
         }
     }
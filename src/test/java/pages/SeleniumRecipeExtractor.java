@@ -0,0 +1,63 @@
+package pages;
+
+import commons.PageArchive;
+import commons.Recipe;
+import driverFactory.DriverPool;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import utilities.HostThrottle;
+
+// Renders the page in a pooled Chrome and reads it through RecipeDetailsPage
+public class SeleniumRecipeExtractor implements RecipeExtractor {
+
+    private final DriverPool driverPool;
+    private final HostThrottle throttle;
+    private final PageArchive.Writer archive;
+
+    public SeleniumRecipeExtractor(DriverPool driverPool) {
+        this(driverPool, HostThrottle.unlimited());
+    }
+
+    public SeleniumRecipeExtractor(DriverPool driverPool, HostThrottle throttle) {
+        this(driverPool, throttle, null);
+    }
+
+    public SeleniumRecipeExtractor(DriverPool driverPool, HostThrottle throttle, PageArchive.Writer archive) {
+        this.driverPool = driverPool;
+        this.throttle = throttle;
+        this.archive = archive;
+    }
+
+    @Override
+    public Recipe extract(String url) throws InterruptedException {
+        try (DriverPool.Lease lease = driverPool.lease()) {
+            WebDriver driver = lease.driver();
+            try {
+                // Navigation until readable counts towards the host's latency, not the extraction
+                RecipeDetailsPage page;
+                boolean ready;
+                try (HostThrottle.Permit permit = throttle.acquire(url)) {
+                    try {
+                        driver.get(url);
+                        // Under the eager strategy the DOM may still be incomplete until the page is ready
+                        page = new RecipeDetailsPage(driver);
+                        ready = page.waitForPageReady();
+                    } catch (WebDriverException e) {
+                        permit.markFailed();
+                        throw e;
+                    }
+                    if (!ready) permit.markFailed();
+                }
+                // A blank recipe would be stored and the URL marked done; fail it so it is retried
+                if (!ready) throw new TimeoutException("Page not ready: " + url);
+                if (archive != null) archive.appendQuietly(PageArchive.DETAIL, url, driver.getPageSource());
+                return page.scrapeReadyPage();
+            } catch (WebDriverException e) {
+                // Crashed or hung browser: don't hand it to the next recipe
+                lease.markBroken();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package pages;
+
+import commons.PageArchive;
+import commons.Recipe;
+import driverFactory.BrowserFactory;
+import driverFactory.TabPool;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import utilities.HostThrottle;
+
+import java.time.Duration;
+
+// SeleniumRecipeExtractor for a TabPool: the page loads in a leased tab while other tabs of the same
+// browser load theirs, and only the ready polls and the extraction hold the browser
+public class TabRecipeExtractor implements RecipeExtractor {
+
+    private static final Duration PAGE_READY_TIMEOUT = Duration.ofSeconds(15);
+
+    private final TabPool tabPool;
+    private final HostThrottle throttle;
+    private final PageArchive.Writer archive;
+
+    public TabRecipeExtractor(TabPool tabPool, HostThrottle throttle, PageArchive.Writer archive) {
+        this.tabPool = tabPool;
+        this.throttle = throttle;
+        this.archive = archive;
+    }
+
+    @Override
+    public Recipe extract(String url) throws InterruptedException {
+        try (TabPool.Lease tab = tabPool.lease()) {
+            try {
+                // Navigation until readable counts towards the host's latency, not the extraction
+                boolean ready;
+                try (HostThrottle.Permit permit = throttle.acquire(url)) {
+                    try {
+                        tab.navigate(url);
+                        ready = tab.awaitReady(BrowserFactory.getProfile().readySelector, PAGE_READY_TIMEOUT);
+                    } catch (WebDriverException e) {
+                        permit.markFailed();
+                        throw e;
+                    }
+                    if (!ready) permit.markFailed();
+                }
+                if (!ready) {
+                    throw new TimeoutException("Page not ready after " + PAGE_READY_TIMEOUT.getSeconds() + "s: " + url);
+                }
+                // Holding the browser: nothing in here may wait, or every other tab of it waits too
+                return tab.call(driver -> {
+                    if (archive != null) archive.appendQuietly(PageArchive.DETAIL, url, driver.getPageSource());
+                    RecipeDetailsPage page = new RecipeDetailsPage(driver);
+                    page.recordPageLoad();
+                    return page.scrapeReadyPage();
+                });
+            } catch (WebDriverException e) {
+                // Crashed or hung tab: close it rather than hand it to the next recipe
+                tab.markBroken();
+                throw e;
+            }
+        }
+    }
+}
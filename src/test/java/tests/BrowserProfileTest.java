@@ -0,0 +1,36 @@
+package tests;
+
+import driverFactory.BrowserProfile;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+public class BrowserProfileTest {
+
+    @Test
+    public void leanProfileBlocksTypesByExtensionAndKeepsDenylist() {
+        BrowserProfile lean = BrowserProfile.lean(List.of(" Font ", "stylesheet", ""), List.of("*doubleclick.net*", " "), "#ingredients");
+        List<String> patterns = lean.blockedUrlPatterns();
+
+        Assert.assertTrue(lean.lean);
+        Assert.assertEquals(lean.name(), BrowserProfile.LEAN_NAME);
+        Assert.assertEquals(lean.readySelector, "#ingredients");
+        Assert.assertEquals(patterns.get(0), "*doubleclick.net*");
+        // Versioned asset URLs (style.css?v=3) are blocked as well
+        Assert.assertTrue(patterns.containsAll(List.of("*.css", "*.css?*", "*.woff2", "*.woff2?*")), patterns.toString());
+        Assert.assertFalse(patterns.contains("*.js"), "scripts are only blocked when asked for");
+    }
+
+    @Test
+    public void fullProfileBlocksNothing() {
+        Assert.assertFalse(BrowserProfile.FULL.lean);
+        Assert.assertTrue(BrowserProfile.FULL.blockedUrlPatterns().isEmpty());
+        Assert.assertEquals(BrowserProfile.lean(List.of(), List.of(), " ").readySelector, BrowserProfile.DEFAULT_READY_SELECTOR);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void rejectsUnknownResourceType() {
+        BrowserProfile.lean(List.of("images"), List.of(), "#ingredients");
+    }
+}
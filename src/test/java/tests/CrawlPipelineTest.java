@@ -0,0 +1,79 @@
+package tests;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import utilities.CrawlPipeline;
+import utilities.WorkerThreads;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CrawlPipelineTest {
+
+    // Simulated blocking fetch; records the highest number of tasks running at once
+    private static CrawlPipeline.UrlTask blockingTask(AtomicInteger running, AtomicInteger peak) {
+        return url -> {
+            int now = running.incrementAndGet();
+            peak.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(20);
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void virtualModeBoundsInFlightBySemaphore() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CrawlPipeline pipeline = new CrawlPipeline(WorkerThreads.VIRTUAL, 3, 10, 0, blockingTask(running, peak));
+        for (int i = 0; i < 40; i++) {
+            Assert.assertTrue(pipeline.submit("https://example.test/recipe-" + i));
+        }
+        pipeline.finish();
+
+        Assert.assertEquals(pipeline.getCompleted(), 40);
+        Assert.assertEquals(running.get(), 0, "finish() must wait for every dispatched task");
+        Assert.assertTrue(peak.get() <= 3, "in flight exceeded the bound: " + peak.get());
+    }
+
+    @Test
+    public void platformModeStopsAtLimit() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CrawlPipeline pipeline = new CrawlPipeline(WorkerThreads.PLATFORM, 2, 4, 5, blockingTask(running, peak));
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (pipeline.submit("https://example.test/recipe-" + i)) accepted++;
+        }
+        pipeline.finish();
+
+        Assert.assertEquals(accepted, 5);
+        Assert.assertEquals(pipeline.getCompleted(), 5);
+        Assert.assertTrue(peak.get() <= 2);
+    }
+
+    // An interrupted worker must not leave the producer blocked on a full queue
+    @Test(timeOut = 10_000, expectedExceptions = IllegalStateException.class)
+    public void submitFailsOnceWorkersAreInterrupted() throws Exception {
+        CrawlPipeline pipeline = new CrawlPipeline(WorkerThreads.PLATFORM, 1, 2, 0, url -> {
+            throw new InterruptedException("worker interrupted");
+        });
+        for (int i = 0; i < 100; i++) {
+            pipeline.submit("https://example.test/recipe-" + i);
+        }
+    }
+
+    @Test
+    public void failedTasksAreCountedNotFatal() throws Exception {
+        CrawlPipeline pipeline = new CrawlPipeline(WorkerThreads.VIRTUAL, 2, 4, 0, url -> {
+            if (url.endsWith("bad")) throw new IllegalStateException("boom");
+        });
+        pipeline.submit("https://example.test/ok");
+        pipeline.submit("https://example.test/bad");
+        pipeline.finish();
+
+        Assert.assertEquals(pipeline.getCompleted(), 1);
+        Assert.assertEquals(pipeline.getFailed(), 1);
+    }
+}
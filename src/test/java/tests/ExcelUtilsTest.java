@@ -0,0 +1,118 @@
+package tests;
+
+import commons.ExcelUtils;
+import commons.IngredientMatcher;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class ExcelUtilsTest {
+
+    private static final String WORKBOOK = "TestData/IngredientsAndComorbidities-ScrapperHackathon_Team2_RR.xlsx";
+    private static final Map<String, String> SHEETS = new LinkedHashMap<>(Map.of(
+            "LCHF", "Final list for LCHFElimination",
+            "LFV", "Final list for LFV Elimination"));
+
+    // The streaming reader must find the same Eliminate/Add terms as reading the workbook DOM
+    @Test
+    public void streamingReadMatchesWorkbookModel() throws Exception {
+        for (String sheet : SHEETS.values()) {
+            ExcelUtils.DietRules streamed = ExcelUtils.loadDietRules(sheet);
+            Assert.assertFalse(streamed.eliminate.isEmpty(), sheet);
+            Assert.assertEquals(streamed.eliminate, domColumn(sheet, "Eliminate"), sheet + " Eliminate");
+            Assert.assertEquals(streamed.add, domColumn(sheet, "Add"), sheet + " Add");
+        }
+    }
+
+    @Test
+    public void readsEverySheetInOnePass() throws Exception {
+        List<ExcelUtils.DietRules> all = ExcelUtils.loadDietRules(SHEETS);
+        Assert.assertEquals(all.size(), 2);
+        for (ExcelUtils.DietRules rules : all) {
+            ExcelUtils.DietRules single = ExcelUtils.loadDietRules(SHEETS.get(rules.diet));
+            Assert.assertEquals(rules.eliminate, single.eliminate, rules.diet);
+            Assert.assertEquals(rules.add, single.add, rules.diet);
+        }
+        Assert.expectThrows(IllegalArgumentException.class, () -> ExcelUtils.getData(List.of("No such sheet")));
+    }
+
+    @Test
+    public void cacheReturnsSameRulesWithCompiledMatchers() throws Exception {
+        Path dir = Files.createTempDirectory("rules-cache");
+        List<ExcelUtils.DietRules> fresh = ExcelUtils.loadDietRules(SHEETS, dir);
+        List<Path> files;
+        try (var list = Files.list(dir)) {
+            files = list.toList();
+        }
+        Assert.assertEquals(files.size(), 1, "one cache file");
+
+        List<ExcelUtils.DietRules> cached = ExcelUtils.loadDietRules(SHEETS, dir);
+        for (int i = 0; i < fresh.size(); i++) {
+            Assert.assertEquals(cached.get(i).diet, fresh.get(i).diet);
+            Assert.assertEquals(cached.get(i).eliminate, fresh.get(i).eliminate);
+            Assert.assertEquals(cached.get(i).add, fresh.get(i).add);
+            IngredientMatcher.Result a = fresh.get(i).matcher().match(List.of("2 cups rice", "1 tbsp ghee", "paneer"));
+            IngredientMatcher.Result b = cached.get(i).matcher().match(List.of("2 cups rice", "1 tbsp ghee", "paneer"));
+            Assert.assertEquals(b.eliminated, a.eliminated);
+            Assert.assertEquals(b.added, a.added);
+        }
+
+        // A different mapping is a different cache entry
+        ExcelUtils.loadDietRules(Map.of("LCHF", SHEETS.get("LCHF")), dir);
+        try (var list = Files.list(dir)) {
+            Assert.assertEquals(list.count(), 2L);
+        }
+    }
+
+    @Test
+    public void corruptCacheIsRebuilt() throws Exception {
+        Path dir = Files.createTempDirectory("rules-cache");
+        ExcelUtils.loadDietRules(SHEETS, dir);
+        Path file;
+        try (var list = Files.list(dir)) {
+            file = list.findFirst().orElseThrow();
+        }
+        Files.write(file, new byte[]{1, 2, 3});
+
+        List<ExcelUtils.DietRules> rules = ExcelUtils.loadDietRules(SHEETS, dir);
+        Assert.assertFalse(rules.get(0).eliminate.isEmpty());
+        Assert.assertTrue(Files.size(file) > 3, "cache rewritten");
+    }
+
+    private static Set<String> domColumn(String sheetName, String column) throws Exception {
+        Set<String> values = new HashSet<>();
+        try (InputStream in = ExcelUtilsTest.class.getClassLoader().getResourceAsStream(WORKBOOK);
+             Workbook workbook = new XSSFWorkbook(in)) {
+            Sheet sheet = null;
+            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+                if (workbook.getSheetName(i).trim().equalsIgnoreCase(sheetName)) sheet = workbook.getSheetAt(i);
+            }
+            Assert.assertNotNull(sheet, sheetName);
+            int col = -1;
+            int headerRow = -1;
+            for (Row row : sheet) {
+                for (Cell cell : row) {
+                    if (cell.toString().trim().equals(column)) {
+                        col = cell.getColumnIndex();
+                        headerRow = row.getRowNum();
+                    }
+                }
+                if (col >= 0) break;
+            }
+            Assert.assertTrue(col >= 0, "no " + column + " column in " + sheetName);
+            for (Row row : sheet) {
+                if (row.getRowNum() <= headerRow) continue;
+                Cell cell = row.getCell(col);
+                String value = cell == null ? "" : cell.toString().trim().toLowerCase();
+                if (!value.isEmpty()) values.add(value);
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,64 @@
+package tests;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import utilities.HostThrottle;
+
+public class HostThrottleTest {
+
+    private static final String URL = "https://www.tarladalal.com/recipe-1";
+
+    private static void fetch(HostThrottle throttle, long millis, boolean fail) throws InterruptedException {
+        try (HostThrottle.Permit permit = throttle.acquire(URL)) {
+            Thread.sleep(millis);
+            if (fail) permit.markFailed();
+        }
+    }
+
+    @Test
+    public void fastSuccessesWidenTheLimit() throws Exception {
+        HostThrottle throttle = new HostThrottle(0, 1, 1, 2, 8, 2.0);
+        for (int i = 0; i < 40; i++) fetch(throttle, 1, false);
+
+        HostThrottle.HostStats s = throttle.stats("www.tarladalal.com");
+        Assert.assertTrue(s.limit > 2, "limit should grow, was " + s.limit);
+        Assert.assertTrue(s.limit <= 8);
+        Assert.assertEquals(s.requests, 40);
+    }
+
+    @Test
+    public void failuresHalveTheLimit() throws Exception {
+        HostThrottle throttle = new HostThrottle(0, 1, 1, 8, 8, 2.0);
+        fetch(throttle, 1, true);
+
+        HostThrottle.HostStats s = throttle.stats("www.tarladalal.com");
+        Assert.assertEquals(s.limit, 4.0);
+        Assert.assertEquals(s.failures, 1);
+
+        // A second failure inside the cooldown does not halve again
+        fetch(throttle, 1, true);
+        Assert.assertEquals(throttle.stats("www.tarladalal.com").limit, 4.0);
+    }
+
+    @Test
+    public void tokenBucketCapsTheRate() throws Exception {
+        HostThrottle throttle = new HostThrottle(20, 1, 1, 4, 4, 2.0);
+        long start = System.nanoTime();
+        for (int i = 0; i < 11; i++) fetch(throttle, 0, false);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // First token is free, the other ten arrive at 20/s
+        Assert.assertTrue(elapsedMs >= 450, "11 fetches at 20/s took only " + elapsedMs + "ms");
+    }
+
+    @Test
+    public void hostsAreThrottledIndependently() throws Exception {
+        HostThrottle throttle = new HostThrottle(0, 1, 1, 1, 1, 2.0);
+        try (HostThrottle.Permit held = throttle.acquire(URL)) {
+            // Would block forever if the other host shared the single slot
+            try (HostThrottle.Permit other = throttle.acquire("http://localhost:8080/recipe")) {
+                Assert.assertEquals(throttle.stats("localhost").inFlight, 1);
+            }
+        }
+    }
+}
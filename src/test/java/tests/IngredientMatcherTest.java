@@ -0,0 +1,112 @@
+package tests;
+
+import commons.ExcelUtils;
+import commons.IngredientMatcher;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+public class IngredientMatcherTest {
+    private ExcelUtils.DietRules rules;
+
+    @BeforeClass
+    public void setup() {
+        rules = new ExcelUtils.DietRules();
+        rules.diet = "TEST";
+        rules.eliminate.addAll(List.of("rice", "sugar", "ham", "corn syrup", "all melon varieties"));
+        rules.add.addAll(List.of("paneer", "cottage cheese", "egg", "ghee"));
+    }
+
+    @Test
+    public void findsTermsInsideIngredientLines() {
+        IngredientMatcher.Result m = rules.matcher().match(List.of(
+                "1 cup chopped paneer\n2 tbsp ghee, melted\n1/2 cup cottage cheese (paneer) cubes"));
+
+        Assert.assertEquals(m.added, Set.of("paneer", "ghee", "cottage cheese"));
+        Assert.assertFalse(m.hasElimination());
+    }
+
+    @Test
+    public void matchesWholeWordsOnly() {
+        // "hamburger", "eggplant" and "sugarcane" contain rule words but are different ingredients
+        IngredientMatcher.Result m = rules.matcher().match(List.of("1 hamburger bun", "2 eggplants", "sugarcane juice"));
+
+        Assert.assertFalse(m.hasElimination());
+        Assert.assertFalse(m.hasAdd());
+    }
+
+    @Test
+    public void reportsOverlappingAndMultiWordTerms() {
+        IngredientMatcher.Result m = rules.matcher().match(List.of("2 tbsp Corn Syrup", "boiled RICE", "1 egg"));
+
+        Assert.assertEquals(m.eliminated, Set.of("corn syrup", "rice"));
+        Assert.assertEquals(m.added, Set.of("egg"));
+    }
+
+    @Test
+    public void termsDoNotSpanLines() {
+        IngredientMatcher.Result m = rules.matcher().match(List.of("salt and corn\nsyrup to taste"));
+
+        Assert.assertFalse(m.hasElimination());
+    }
+
+    // The compiled matcher replaces the old set lookup (whole line must equal a rule word): wherever the
+    // set lookup matched, the matcher must match too; timing is in benchmarks.ClassificationBenchmark
+    @Test
+    public void findsEverythingTheSetLookupFinds() throws Exception {
+        ExcelUtils.DietRules lchf = ExcelUtils.loadDietRules("LCHF", "Final list for LCHFElimination");
+        IngredientMatcher matcher = lchf.matcher();
+
+        for (List<String> ingredients : syntheticRecipes(lchf, 2_000, 10, 42)) {
+            IngredientMatcher.Result m = matcher.match(ingredients);
+            if (setLookupEliminates(lchf, ingredients)) Assert.assertTrue(m.hasElimination(), ingredients.toString());
+            if (setLookupAdds(lchf, ingredients)) Assert.assertTrue(m.hasAdd(), ingredients.toString());
+        }
+        // Lines that are exactly a rule term: both find the same terms
+        for (String term : lchf.eliminate) {
+            Assert.assertEquals(matcher.match(List.of(term)).hasElimination(), setLookupEliminates(lchf, List.of(term)), term);
+        }
+    }
+
+    private static boolean setLookupEliminates(ExcelUtils.DietRules rules, List<String> ingredients) {
+        return rules.eliminate.stream().anyMatch(lowerCaseLines(ingredients)::contains);
+    }
+
+    private static boolean setLookupAdds(ExcelUtils.DietRules rules, List<String> ingredients) {
+        return rules.add.stream().anyMatch(lowerCaseLines(ingredients)::contains);
+    }
+
+    private static Set<String> lowerCaseLines(List<String> ingredients) {
+        Set<String> ingSet = new HashSet<>();
+        ingredients.forEach(ing -> ingSet.add(ing.toLowerCase().trim()));
+        return ingSet;
+    }
+
+    // Lines look like "2 cups finely chopped <word> <word>", with a rule term in roughly one line out of four
+    public static List<List<String>> syntheticRecipes(ExcelUtils.DietRules rules, int count, int linesPerRecipe, long seed) {
+        Random rnd = new Random(seed);
+        String[] quantities = {"1", "2", "1/2", "3/4", "a pinch of", "salt to taste,"};
+        String[] units = {"cup", "cups", "tbsp", "tsp", "nos.", "grams"};
+        String[] preps = {"finely chopped", "grated", "boiled", "soaked", "roasted", ""};
+        String[] fillers = {"water", "salt", "chilli powder", "coriander", "cumin seeds", "mustard seeds",
+                "green peas", "tomatoes", "potatoes", "cabbage", "asafoetida", "lemon juice", "oats", "spinach"};
+        List<String> terms = new ArrayList<>(rules.eliminate);
+        terms.addAll(rules.add);
+
+        List<List<String>> recipes = new ArrayList<>(count);
+        for (int r = 0; r < count; r++) {
+            List<String> lines = new ArrayList<>(linesPerRecipe);
+            for (int l = 0; l < linesPerRecipe; l++) {
+                String item = (rnd.nextInt(4) == 0 && !terms.isEmpty())
+                        ? terms.get(rnd.nextInt(terms.size()))
+                        : fillers[rnd.nextInt(fillers.length)];
+                lines.add(quantities[rnd.nextInt(quantities.length)] + " " + units[rnd.nextInt(units.length)] + " "
+                        + preps[rnd.nextInt(preps.length)] + " " + item);
+            }
+            recipes.add(lines);
+        }
+        return recipes;
+    }
+}
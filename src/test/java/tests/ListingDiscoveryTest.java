@@ -0,0 +1,200 @@
+package tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import pages.ListingDiscovery;
+import utilities.HostThrottle;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ListingDiscoveryTest {
+
+    private static final int PAGES = 7;
+    private static final int RECIPES_PER_PAGE = 3;
+
+    private HttpServer server;
+    private String base;
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    // Page -> number of 503 responses still to serve for it
+    private final Map<Integer, AtomicInteger> failures = new ConcurrentHashMap<>();
+    // /catalog/ pages from this one on answer 503 for good
+    private final AtomicInteger failingFrom = new AtomicInteger(Integer.MAX_VALUE);
+
+    // Listing pages in tarladalal markup: /recipes/?page=N, empty past the last page, with a pagination
+    // bar that shows only the pages next to the current one. /catalog/ is the same listing on a site that
+    // shows Next on every page and answers 404 past the last one.
+    @BeforeClass
+    public void startSite() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/recipes/", exchange -> serveListing(exchange, "/recipes/", false));
+        server.createContext("/catalog/", exchange -> serveListing(exchange, "/catalog/", true));
+        server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void serveListing(HttpExchange exchange, String path, boolean endless) throws IOException {
+        int now = concurrent.incrementAndGet();
+        maxConcurrent.accumulateAndGet(now, Math::max);
+        try {
+            String query = exchange.getRequestURI().getQuery();
+            int page = query == null ? 1 : Integer.parseInt(query.replaceAll(".*page=(\\d+).*", "$1"));
+            Thread.sleep(30);
+            AtomicInteger failing = failures.get(page);
+            int status = (failing != null && failing.getAndDecrement() > 0) ? 503
+                    : (endless && page >= failingFrom.get()) ? 503
+                    : (endless && page > PAGES) ? 404 : 200;
+            byte[] body = listingHtml(path, page, endless).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            concurrent.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopSite() {
+        if (server != null) server.stop(0);
+    }
+
+    private static String listingHtml(String path, int page, boolean endless) {
+        StringBuilder html = new StringBuilder("<html><body><div class='recipes'>");
+        if (page <= PAGES) {
+            for (int i = 0; i < RECIPES_PER_PAGE; i++) {
+                html.append("<div class='card'><h5><a href='").append(path).append("dish-").append(page).append('-').append(i).append("'>Dish</a></h5></div>");
+            }
+        }
+        html.append("</div><ul class='pagination'>");
+        for (int p = Math.max(1, page - 2); p <= Math.min(PAGES, page + 2); p++) {
+            html.append("<li><a class='page-link' href='").append(path).append("?page=").append(p).append("'>").append(p).append("</a></li>");
+        }
+        if (endless || page < PAGES) {
+            html.append("<li><a class='page-link' href='").append(path).append("?page=").append(page + 1).append("'>Next</a></li>");
+        }
+        return html.append("</ul></body></html>").toString();
+    }
+
+    @Test
+    public void derivesPageParameterFromNextLink() {
+        Assert.assertEquals(ListingDiscovery.pageParameter("https://site/recipes/", "https://site/recipes/?page=2"), "page");
+        Assert.assertEquals(ListingDiscovery.pageParameter("https://site/r?sort=new", "https://site/r?sort=new&p=2"), "p");
+        Assert.assertNull(ListingDiscovery.pageParameter("https://site/r", "https://site/r/2"));
+        Assert.assertNull(ListingDiscovery.pageParameter("https://site/r", null));
+    }
+
+    @Test
+    public void buildsPageUrlsKeepingOtherParameters() {
+        Assert.assertEquals(ListingDiscovery.pageUrl("https://site/r?sort=new&page=1", "page", 5), "https://site/r?sort=new&page=5");
+        Assert.assertEquals(ListingDiscovery.pageUrl("https://site/recipes/", "page", 3), "https://site/recipes/?page=3");
+    }
+
+    @Test
+    public void fetchesAllPagesConcurrently() throws Exception {
+        ListingDiscovery discovery = ListingDiscovery.detect(base + "/recipes/", HostThrottle.unlimited(), "");
+        Assert.assertNotNull(discovery);
+
+        Set<String> found = new LinkedHashSet<>();
+        Set<Integer> pages = new TreeSet<>();
+        maxConcurrent.set(0);
+        boolean finished = discovery.run(1, 4, () -> false, (page, pageUrl, urls) -> {
+            pages.add(page);
+            found.addAll(urls);
+        });
+
+        Assert.assertTrue(finished);
+        Assert.assertEquals(found.size(), PAGES * RECIPES_PER_PAGE);
+        Assert.assertEquals(pages.size(), PAGES);
+        // Past the last page, which the pagination window on page 1 doesn't show
+        Assert.assertTrue(discovery.getResumePage() > PAGES);
+        Assert.assertTrue(maxConcurrent.get() > 1, "listing pages were fetched one at a time");
+    }
+
+    @Test
+    public void retriesAFailedPage() throws Exception {
+        ListingDiscovery discovery = ListingDiscovery.detect(base + "/recipes/", HostThrottle.unlimited(), "");
+        failures.put(4, new AtomicInteger(1));
+        try {
+            Set<String> found = new HashSet<>();
+            boolean finished = discovery.run(1, 4, () -> false, (page, pageUrl, urls) -> found.addAll(urls));
+
+            Assert.assertTrue(finished);
+            Assert.assertEquals(found.size(), PAGES * RECIPES_PER_PAGE);
+        } finally {
+            failures.clear();
+        }
+    }
+
+    @Test
+    public void leavesTheListingIncompleteWhenAPageKeepsFailing() throws Exception {
+        ListingDiscovery discovery = ListingDiscovery.detect(base + "/recipes/", HostThrottle.unlimited(), "");
+        failures.put(3, new AtomicInteger(Integer.MAX_VALUE));
+        try {
+            Set<Integer> pages = new TreeSet<>();
+            boolean finished = discovery.run(1, 4, () -> false, (page, pageUrl, urls) -> pages.add(page));
+
+            Assert.assertFalse(finished);
+            Assert.assertFalse(pages.contains(3));
+            Assert.assertEquals(discovery.getResumePage(), 3);
+        } finally {
+            failures.clear();
+        }
+    }
+
+    @Test(timeOut = 30_000)
+    public void endsTheListingAtNotFound() throws Exception {
+        ListingDiscovery discovery = ListingDiscovery.detect(base + "/catalog/", HostThrottle.unlimited(), "");
+        Assert.assertNotNull(discovery);
+
+        Set<String> found = new HashSet<>();
+        boolean finished = discovery.run(1, 4, () -> false, (page, pageUrl, urls) -> found.addAll(urls));
+
+        Assert.assertTrue(finished);
+        Assert.assertEquals(found.size(), PAGES * RECIPES_PER_PAGE);
+        Assert.assertTrue(discovery.getResumePage() > PAGES);
+    }
+
+    @Test(timeOut = 30_000)
+    public void stopsRequestingPagesAfterAPermanentFailure() throws Exception {
+        ListingDiscovery discovery = ListingDiscovery.detect(base + "/catalog/", HostThrottle.unlimited(), "");
+        failingFrom.set(5);
+        try {
+            Set<Integer> pages = new TreeSet<>();
+            boolean finished = discovery.run(1, 4, () -> false, (page, pageUrl, urls) -> pages.add(page));
+
+            Assert.assertFalse(finished);
+            Assert.assertEquals(pages, Set.of(1, 2, 3, 4));
+            Assert.assertEquals(discovery.getResumePage(), 5);
+        } finally {
+            failingFrom.set(Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void stopsWhenTheCallerIsSatisfied() throws Exception {
+        ListingDiscovery discovery = ListingDiscovery.detect(base + "/recipes/", HostThrottle.unlimited(), "");
+        List<String> found = new ArrayList<>();
+        boolean finished = discovery.run(1, 2, () -> found.size() >= 5, (page, pageUrl, urls) -> found.addAll(urls));
+
+        Assert.assertFalse(finished);
+        Assert.assertTrue(found.size() >= 5 && found.size() < PAGES * RECIPES_PER_PAGE);
+    }
+
+    @Test
+    public void returnsNullWithoutPagination() {
+        Assert.assertNull(ListingDiscovery.pageParameter(base + "/recipes/", base + "/recipes/next"));
+    }
+}
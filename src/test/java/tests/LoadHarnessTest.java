@@ -0,0 +1,279 @@
+package tests;
+
+import commons.ConfigReader;
+import commons.DbManager;
+import commons.ExcelUtils;
+import commons.PageArchive;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import utilities.Metrics;
+import utilities.StubRecipeSite;
+import utilities.VisitedUrls;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.*;
+
+// Load harness: crawls a local StubRecipeSite through the scraper's own mode entry points
+// (RecipeScraperOptimizedTest.scrapeDiet with BaseTest's pools, throttle, frontier and DB writer) in every
+// ScraperMode at increasing worker counts, and reports recipes/sec and p50/p99 page fetch time (bucket
+// upper bounds of scraper_page_load_seconds over the run). Outcomes are read from the scraper's metrics. REPLAY runs read a page archive recorded from the stub site by one
+// untimed ALL run; RECLASSIFY runs rebuild the diet tables from the recipes_raw rows the earlier runs
+// stored; each COORDINATOR run is followed by a WORKER run that drains its queue.
+// Rows are written to Postgres, to the database named by -Dharness.dbName (default recipes_harness, create
+// it first) rather than the configured one, since every run resets the diet tables. Skipped without it.
+// Tune with -Dharness.pages, -Dharness.recipesPerPage, -Dharness.latencyMs, -Dharness.jitterMs,
+// -Dharness.errorRate, -Dharness.threads=1,2,4,8 and -Dharness.backend=http|selenium.
+// The table is logged and written to target/load-harness.csv. Not part of testng.xml because it takes a
+// while; run it with: mvn test -Dtest=LoadHarnessTest
+public class LoadHarnessTest {
+    private static final Logger log = LogManager.getLogger(LoadHarnessTest.class.getName());
+
+    private final int pages = Integer.getInteger("harness.pages", 8);
+    private final int recipesPerPage = Integer.getInteger("harness.recipesPerPage", 10);
+    private final long latencyMs = Long.getLong("harness.latencyMs", 20);
+    private final long jitterMs = Long.getLong("harness.jitterMs", 10);
+    private final double errorRate = Double.parseDouble(System.getProperty("harness.errorRate", "0.02"));
+    private final String backend = System.getProperty("harness.backend", "http");
+    private final String dbName = System.getProperty("harness.dbName", "recipes_harness");
+    private final int[] threadCounts = Arrays.stream(System.getProperty("harness.threads", "1,2,4,8,16").split(","))
+            .map(String::trim).mapToInt(Integer::parseInt).toArray();
+
+    private static final int FIRST_N_LIMIT = 20;
+    private static final String KEYWORD = "paneer";
+    private static final Path ARCHIVE_DIR = Path.of("target", "harness-archive");
+
+    private StubRecipeSite site;
+    private int archivedRecipes;
+
+    @BeforeClass
+    public void startSite() throws Exception {
+        site = new StubRecipeSite(pages, recipesPerPage, latencyMs, jitterMs, errorRate, 42);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopSite() {
+        if (site != null) site.close();
+    }
+
+    // One untimed ALL crawl of the stub site into a fresh archive; failed pages are not archived
+    private void recordArchive() throws Exception {
+        if (Files.exists(ARCHIVE_DIR)) {
+            try (var files = Files.list(ARCHIVE_DIR)) {
+                for (Path f : files.toList()) Files.delete(f);
+            }
+        }
+        run(RecipeScraperOptimizedTest.ScraperMode.ALL, 8, ARCHIVE_DIR.toString());
+        try (PageArchive.Reader archive = new PageArchive.Reader(ARCHIVE_DIR)) {
+            archivedRecipes = archive.urls(PageArchive.DETAIL).size();
+        }
+        Assert.assertTrue(archivedRecipes > 0, "nothing archived from the stub site");
+    }
+
+    @Test
+    public void scalingCurve() throws Exception {
+        recordArchive();
+        List<RunResult> results = new ArrayList<>();
+        for (RecipeScraperOptimizedTest.ScraperMode mode : RecipeScraperOptimizedTest.ScraperMode.values()) {
+            if (mode == RecipeScraperOptimizedTest.ScraperMode.WORKER) continue; // runs after its COORDINATOR
+            for (int threads : threadCounts) {
+                results.add(run(mode, threads, mode == RecipeScraperOptimizedTest.ScraperMode.REPLAY ? ARCHIVE_DIR.toString() : ""));
+                if (mode == RecipeScraperOptimizedTest.ScraperMode.COORDINATOR) {
+                    results.add(run(RecipeScraperOptimizedTest.ScraperMode.WORKER, threads, ""));
+                }
+            }
+        }
+
+        StringBuilder csv = new StringBuilder("mode,threads,recipes,failed,seconds,recipes_per_sec,p50_page_ms,p99_page_ms\n");
+        log.info(String.format("Stub site: %d recipes, latency %dms + exp(%dms), error rate %.2f, backend %s",
+                site.recipeCount(), latencyMs, jitterMs, errorRate, backend));
+        log.info(String.format("%-11s %7s %8s %6s %8s %10s %11s %11s", "mode", "threads", "recipes", "failed", "seconds", "recipes/s", "p50 page ms", "p99 page ms"));
+        for (RunResult r : results) {
+            log.info(String.format("%-11s %7d %8d %6d %8.2f %10.1f %11.0f %11.0f",
+                    r.mode, r.threads, r.processed, r.failed, r.seconds, r.recipesPerSecond(), r.p50PageMs, r.p99PageMs));
+            csv.append(String.format(Locale.ROOT, "%s,%d,%d,%d,%.3f,%.2f,%.0f,%.0f%n",
+                    r.mode, r.threads, r.processed, r.failed, r.seconds, r.recipesPerSecond(), r.p50PageMs, r.p99PageMs));
+        }
+        Path out = Path.of("target", "load-harness.csv");
+        Files.createDirectories(out.getParent());
+        Files.writeString(out, csv);
+
+        // Every mode processed what it should; speed is reported, not asserted
+        for (RunResult r : results) {
+            String run = r.mode + " x" + r.threads;
+            switch (r.mode) {
+                case ALL -> Assert.assertEquals(r.processed + r.failed, site.recipeCount(), run);
+                case FIRST_N -> Assert.assertEquals(r.processed + r.failed, FIRST_N_LIMIT, run);
+                case KEYWORD -> Assert.assertEquals(r.processed + r.failed, keywordRecipeCount(), run);
+                case SINGLE_URL -> Assert.assertEquals(r.processed + r.failed, 1, run);
+                case REPLAY -> Assert.assertEquals(r.processed + r.failed, archivedRecipes, run);
+                case RECLASSIFY -> Assert.assertEquals(r.processed, r.expected, run);
+                // The coordinator only queues; the worker scrapes each URL once or gives up on it
+                // after retries, so failures can outnumber the URLs that never got done
+                case COORDINATOR -> Assert.assertEquals(r.processed + r.failed, 0, run);
+                case WORKER -> {
+                    Assert.assertTrue(r.processed > 0 && r.processed <= site.recipeCount(), run);
+                    Assert.assertTrue(r.processed + r.failed >= site.recipeCount(), run);
+                }
+            }
+        }
+    }
+
+    private int keywordRecipeCount() {
+        int count = 0;
+        for (int n = 0; n < site.recipeCount(); n++) {
+            if (site.recipeUrl(n).contains(KEYWORD)) count++;
+        }
+        return count;
+    }
+
+    // ---------------- One run ----------------
+    // Runs one mode the way testng.xml does: BaseTest's and the scraper's class setup, scrapeDiet for
+    // every row of the data provider, then teardown. Settings go in as -D overrides of Config.properties.
+    @SuppressWarnings("unchecked")
+    private RunResult run(RecipeScraperOptimizedTest.ScraperMode mode, int threads, String archiveDir) throws Exception {
+        Map<String, String> settings = settings(mode, threads, archiveDir);
+        Map<String, String> previous = new HashMap<>();
+        settings.forEach((key, value) -> previous.put(key, System.getProperty(key)));
+        settings.forEach(System::setProperty);
+
+        RecipeScraperOptimizedTest scraper = new RecipeScraperOptimizedTest();
+        try {
+            long expected = mode == RecipeScraperOptimizedTest.ScraperMode.RECLASSIFY ? expectedClassifications() : 0;
+            try {
+                scraper.setUpClass();
+            } catch (SQLException e) {
+                throw new SkipException("Postgres database " + dbName + " not available: " + e.getMessage());
+            } catch (org.openqa.selenium.WebDriverException e) {
+                throw new SkipException("Selenium backend not available: " + e.getMessage());
+            }
+            scraper.setup();
+
+            long scrapedBefore = recipes("scraped");
+            long failedBefore = recipes("failed");
+            long classifiedBefore = classified();
+            Metrics.Timer pageLoads = Metrics.timer("scraper_page_load_seconds",
+                    "Page fetch time (listing and detail), per host", "host", "127.0.0.1");
+            Metrics.Snapshot pageLoadsBefore = pageLoads.snapshot();
+            int singleFailed = 0;
+
+            long start = System.nanoTime();
+            for (Object[] row : scraper.dietData()) {
+                try {
+                    scraper.scrapeDiet((String) row[0], (String) row[1], (List<ExcelUtils.DietRules>) row[2], (VisitedUrls) row[3]);
+                } catch (IOException e) {
+                    // SINGLE_URL scrapes on the test thread, so a 503 from the stub surfaces here
+                    if (mode != RecipeScraperOptimizedTest.ScraperMode.SINGLE_URL) throw e;
+                    singleFailed++;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Metrics.Snapshot runPageLoads = pageLoads.snapshot().minus(pageLoadsBefore);
+            long processed = mode == RecipeScraperOptimizedTest.ScraperMode.RECLASSIFY
+                    ? classified() - classifiedBefore : recipes("scraped") - scrapedBefore;
+            return new RunResult(mode, threads, processed, recipes("failed") - failedBefore + singleFailed,
+                    expected, seconds, runPageLoads.quantileSeconds(0.5) * 1000, runPageLoads.quantileSeconds(0.99) * 1000);
+        } finally {
+            scraper.closeArchive();
+            scraper.tearDownClass();
+            previous.forEach((key, value) -> {
+                if (value == null) System.clearProperty(key);
+                else System.setProperty(key, value);
+            });
+        }
+    }
+
+    private Map<String, String> settings(RecipeScraperOptimizedTest.ScraperMode mode, int threads, String archiveDir) {
+        Map<String, String> s = new LinkedHashMap<>();
+        s.put("db.name", dbName);
+        s.put("scraper.mode", mode.name());
+        s.put("scraper.multiDiet", "true");
+        s.put("scraper.startUrl", site.listingUrl());
+        s.put("scraper.limit", String.valueOf(FIRST_N_LIMIT));
+        s.put("scraper.keyword", KEYWORD);
+        s.put("scraper.singleRecipeUrl", site.recipeUrl(0));
+        s.put("scraper.archiveDir", archiveDir);
+        s.put("scraper.resume", "false");
+        s.put("scraper.incremental", "false");
+        // The default backend, so the modes that fetch no detail pages keep their own
+        s.put("scraper.backend", backend);
+        s.put("scraper.threadPoolSize", String.valueOf(threads));
+        s.put("scraper.driverPool.size", String.valueOf(threads));
+        s.put("scraper.queueCapacity", String.valueOf(threads * 4));
+        s.put("scraper.maxInFlight", String.valueOf(threads));
+        s.put("scraper.initialInFlight", String.valueOf(threads));
+        s.put("scraper.rateLimit.perSecond", "0");
+        s.put("distributed.workerId", "harness");
+        s.put("distributed.pollMillis", "100");
+        s.put("distributed.waitForWorkers", "false");
+        s.put("metrics.port", "0");
+        s.put("metrics.summaryFile", "");
+        s.put("headless", "true");
+        return s;
+    }
+
+    // Every recipe in recipes_raw lands in one of the two tables of every diet
+    private long expectedClassifications() throws IOException {
+        ConfigReader cfg = ConfigReader.load();
+        try {
+            DbManager db = new DbManager(cfg);
+            try {
+                return (long) db.getRowCount(DbManager.RAW_TABLE) * cfg.dietSheets.size();
+            } finally {
+                db.close();
+            }
+        } catch (SQLException e) {
+            throw new SkipException("Postgres database " + dbName + " not available: " + e.getMessage());
+        }
+    }
+
+    private static long recipes(String result) {
+        return Metrics.counter("scraper_recipes_total", "Recipes by outcome", "result", result).get();
+    }
+
+    private static long classified() throws IOException {
+        long total = 0;
+        for (String diet : ConfigReader.load().dietSheets.keySet()) {
+            for (String result : List.of("added", "eliminated")) {
+                total += Metrics.counter("scraper_recipes_classified_total", "Recipes per diet and table",
+                        "diet", diet, "result", result).get();
+            }
+        }
+        return total;
+    }
+
+    private static class RunResult {
+        final RecipeScraperOptimizedTest.ScraperMode mode;
+        final int threads;
+        final long processed;   // recipes scraped, or classified for RECLASSIFY
+        final long failed;
+        final long expected;    // RECLASSIFY: stored recipes times diets
+        final double seconds;
+        final double p50PageMs;     // 0 when the run fetched nothing from the site
+        final double p99PageMs;
+
+        RunResult(RecipeScraperOptimizedTest.ScraperMode mode, int threads, long processed, long failed, long expected,
+                  double seconds, double p50PageMs, double p99PageMs) {
+            this.mode = mode;
+            this.threads = threads;
+            this.processed = processed;
+            this.failed = failed;
+            this.expected = expected;
+            this.seconds = seconds;
+            this.p50PageMs = p50PageMs;
+            this.p99PageMs = p99PageMs;
+        }
+
+        double recipesPerSecond() {
+            return seconds == 0 ? 0 : processed / seconds;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package tests;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import utilities.Metrics;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class MetricsTest {
+
+    @Test
+    public void rendersCountersGaugesAndHistograms() {
+        Metrics.counter("test_recipes_total", "Recipes", "diet", "LCHF", "result", "added").add(3);
+        Metrics.gauge("test_queue_depth", "Depth", () -> 7);
+        Metrics.Timer t = Metrics.timer("test_page_load_seconds", "Page load", "host", "example.test");
+        t.record(3_000_000);      // 3ms
+        t.record(700_000_000);    // 700ms
+
+        String text = Metrics.prometheusText();
+        Assert.assertTrue(text.contains("# TYPE test_recipes_total counter"));
+        Assert.assertTrue(text.contains("test_recipes_total{diet=\"LCHF\",result=\"added\"} 3"));
+        Assert.assertTrue(text.contains("test_queue_depth 7"));
+        Assert.assertTrue(text.contains("# TYPE test_page_load_seconds histogram"));
+        Assert.assertTrue(text.contains("test_page_load_seconds_bucket{host=\"example.test\",le=\"0.005\"} 1"));
+        Assert.assertTrue(text.contains("test_page_load_seconds_bucket{host=\"example.test\",le=\"1.0\"} 2"));
+        Assert.assertTrue(text.contains("test_page_load_seconds_bucket{host=\"example.test\",le=\"+Inf\"} 2"));
+        Assert.assertTrue(text.contains("test_page_load_seconds_count{host=\"example.test\"} 2"));
+        Assert.assertEquals(t.quantileSeconds(0.5), 0.005);
+    }
+
+    @Test
+    public void quantilesOfTheSamplesBetweenTwoSnapshots() {
+        Metrics.Timer t = Metrics.timer("test_window_seconds", "Window", "host", "example.test");
+        for (int i = 0; i < 10; i++) t.record(2_000_000_000L);     // 2s, before the window
+        Metrics.Snapshot before = t.snapshot();
+        for (int i = 0; i < 99; i++) t.record(20_000_000);         // 20ms
+        t.record(400_000_000);                                     // 400ms
+
+        Metrics.Snapshot window = t.snapshot().minus(before);
+        Assert.assertEquals(window.getCount(), 100);
+        Assert.assertEquals(window.quantileSeconds(0.5), 0.025);
+        Assert.assertEquals(window.quantileSeconds(0.99), 0.025);
+        Assert.assertEquals(window.quantileSeconds(1.0), 0.5);
+        // The samples before the window still count towards the timer's own quantiles
+        Assert.assertEquals(t.quantileSeconds(0.99), 2.5);
+    }
+
+    @Test
+    public void servesPrometheusEndpoint() throws Exception {
+        Metrics.counter("test_endpoint_hits_total", "Hits").inc();
+        try (Metrics.Server server = new Metrics.Server(0)) {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + "/metrics")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(response.statusCode(), 200);
+            Assert.assertTrue(response.body().contains("test_endpoint_hits_total 1"));
+        }
+    }
+
+    @Test
+    public void writesJsonSummary() throws Exception {
+        Metrics.timer("test_db_insert_seconds", "DB insert", "mode", "batch").record(20_000_000);
+        Path file = Files.createTempDirectory("metrics").resolve("summary.json");
+        Metrics.writeJsonSummary(file);
+
+        String json = Files.readString(file);
+        Assert.assertTrue(json.contains("\"test_db_insert_seconds{mode=\\\"batch\\\"}\": {\"count\": 1"), json);
+        Assert.assertTrue(json.contains("\"counters\""));
+    }
+}
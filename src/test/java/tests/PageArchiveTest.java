@@ -0,0 +1,119 @@
+package tests;
+
+import commons.PageArchive;
+import commons.Recipe;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import pages.ArchiveRecipeExtractor;
+import pages.HttpRecipeExtractor;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class PageArchiveTest {
+
+    @Test
+    public void roundTripsPagesOfBothKinds() throws Exception {
+        Path dir = Files.createTempDirectory("archive");
+        try (PageArchive.Writer writer = new PageArchive.Writer(dir)) {
+            writer.append(PageArchive.LISTING, "https://example.com/recipes/", "<html>listing é</html>");
+            writer.append(PageArchive.DETAIL, "https://example.com/r/1", "<html>one</html>");
+            writer.append(PageArchive.DETAIL, "https://example.com/r/2", "<html>two</html>");
+        }
+        try (PageArchive.Reader reader = new PageArchive.Reader(dir)) {
+            Assert.assertEquals(reader.size(), 3);
+            Assert.assertEquals(reader.urls(PageArchive.LISTING), List.of("https://example.com/recipes/"));
+            Assert.assertEquals(reader.urls(PageArchive.DETAIL), List.of("https://example.com/r/1", "https://example.com/r/2"));
+            Assert.assertEquals(reader.read("https://example.com/recipes/"), "<html>listing é</html>");
+            Assert.assertEquals(reader.read("https://example.com/r/2"), "<html>two</html>");
+            Assert.assertNull(reader.read("https://example.com/r/3"));
+        }
+    }
+
+    @Test
+    public void rollsOverSegmentsAndKeepsLatestCopy() throws Exception {
+        Path dir = Files.createTempDirectory("archive");
+        Random rnd = new Random(7);
+        Map<String, String> pages = new LinkedHashMap<>();
+        // Small segments and incompressible pages force several rollovers
+        try (PageArchive.Writer writer = new PageArchive.Writer(dir, 16 * 1024)) {
+            for (int i = 0; i < 50; i++) {
+                String url = "https://example.com/r/" + (i % 40);
+                String html = randomHtml(rnd, 2000);
+                writer.append(PageArchive.DETAIL, url, html);
+                pages.put(url, html);
+            }
+        }
+        Assert.assertTrue(Files.exists(dir.resolve("pages-002.seg")), "expected more than two segments");
+
+        // Reopening appends to the last segment
+        try (PageArchive.Writer writer = new PageArchive.Writer(dir, 16 * 1024)) {
+            writer.append(PageArchive.DETAIL, "https://example.com/r/0", "<html>latest</html>");
+            pages.put("https://example.com/r/0", "<html>latest</html>");
+        }
+
+        try (PageArchive.Reader reader = new PageArchive.Reader(dir)) {
+            Assert.assertEquals(reader.size(), 40);
+            for (Map.Entry<String, String> e : pages.entrySet()) {
+                Assert.assertEquals(reader.read(e.getKey()), e.getValue(), e.getKey());
+            }
+        }
+    }
+
+    @Test
+    public void ignoresTornIndexEntry() throws Exception {
+        Path dir = Files.createTempDirectory("archive");
+        try (PageArchive.Writer writer = new PageArchive.Writer(dir)) {
+            writer.append(PageArchive.DETAIL, "https://example.com/r/1", "<html>one</html>");
+        }
+        // A crash half way through writing the next index entry
+        Files.write(dir.resolve("pages-000.idx"), new byte[]{0, 0, 0, 0, 0, 0, 1}, java.nio.file.StandardOpenOption.APPEND);
+
+        try (PageArchive.Reader reader = new PageArchive.Reader(dir)) {
+            Assert.assertEquals(reader.size(), 1);
+            Assert.assertEquals(reader.read("https://example.com/r/1"), "<html>one</html>");
+        }
+    }
+
+    // Replay must build the same Recipe as parsing the live page
+    @Test
+    public void replayExtractsArchivedFixtures() throws Exception {
+        Path dir = Files.createTempDirectory("archive");
+        Map<String, String> fixtures = new LinkedHashMap<>();
+        for (String name : List.of("paneer-tikka", "methi-thepla")) {
+            fixtures.put("https://www.tarladalal.com/" + name, fixture("fixtures/recipes/" + name + ".html"));
+        }
+        try (PageArchive.Writer writer = new PageArchive.Writer(dir)) {
+            for (Map.Entry<String, String> e : fixtures.entrySet()) writer.append(PageArchive.DETAIL, e.getKey(), e.getValue());
+        }
+
+        try (PageArchive.Reader reader = new PageArchive.Reader(dir)) {
+            ArchiveRecipeExtractor extractor = new ArchiveRecipeExtractor(reader);
+            for (Map.Entry<String, String> e : fixtures.entrySet()) {
+                Recipe replayed = extractor.extract(e.getKey());
+                Recipe live = HttpRecipeExtractor.parse(e.getValue(), e.getKey());
+                Assert.assertEquals(replayed.Recipe_Name, live.Recipe_Name);
+                Assert.assertEquals(replayed.Ingredients, live.Ingredients);
+                Assert.assertEquals(replayed.Preparation_method, live.Preparation_method);
+                Assert.assertEquals(replayed.Recipe_URL, e.getKey());
+            }
+            Assert.expectThrows(IOException.class, () -> extractor.extract("https://www.tarladalal.com/missing"));
+        }
+    }
+
+    private static String fixture(String name) throws Exception {
+        URL resource = PageArchiveTest.class.getClassLoader().getResource(name);
+        Assert.assertNotNull(resource, "Missing fixture " + name);
+        return Files.readString(Path.of(resource.toURI()), StandardCharsets.UTF_8);
+    }
+
+    private static String randomHtml(Random rnd, int length) {
+        StringBuilder sb = new StringBuilder("<html>");
+        for (int i = 0; i < length; i++) sb.append((char) ('!' + rnd.nextInt(90)));
+        return sb.append("</html>").toString();
+    }
+}
@@ -0,0 +1,153 @@
+package tests;
+
+import commons.Recipe;
+import driverFactory.BrowserFactory;
+import driverFactory.TabPool;
+import org.openqa.selenium.WebDriver;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.*;
+import pages.HttpRecipeExtractor;
+import pages.RecipeDetailsPage;
+import pages.TabRecipeExtractor;
+import utilities.HostThrottle;
+
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs the selenium and http backends over the saved pages in fixtures/recipes and compares the Recipe they build
+public class RecipeExtractorParityTest {
+
+    private WebDriver driver;
+
+    @DataProvider(name = "fixtures")
+    public Object[][] fixtures() {
+        return new Object[][]{
+                {"fixtures/recipes/paneer-tikka.html"},
+                {"fixtures/recipes/methi-thepla.html"}
+        };
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown() {
+        if (driver != null) driver.quit();
+    }
+
+    @Test(dataProvider = "fixtures")
+    public void httpBackendReadsFixture(String fixture) throws Exception {
+        Path page = fixturePath(fixture);
+        Recipe r = HttpRecipeExtractor.parse(Files.readString(page, StandardCharsets.UTF_8), page.toUri().toString());
+
+        Assert.assertFalse(r.Recipe_Name.isEmpty(), "Recipe_Name");
+        Assert.assertFalse(r.Ingredients.isEmpty(), "Ingredients");
+        Assert.assertFalse(r.Preparation_method.isEmpty(), "Preparation_method");
+        Assert.assertEquals(r.Recipe_URL, page.toUri().toString());
+    }
+
+    @Test(dataProvider = "fixtures")
+    public void backendsProduceSameRecipe(String fixture) throws Exception {
+        Path page = fixturePath(fixture);
+        String url = page.toUri().toString();
+
+        WebDriver driver = browser();
+        driver.get(url);
+        Recipe fromBrowser = new RecipeDetailsPage(driver).scrapeRecipe();
+        Recipe fromHttp = HttpRecipeExtractor.parse(Files.readString(page, StandardCharsets.UTF_8), url);
+
+        assertSameRecipe(fromHttp, fromBrowser);
+    }
+
+    // The single executeScript extraction must read exactly what the per-field PageFactory path reads
+    @Test(dataProvider = "fixtures")
+    public void scriptAndPerFieldPathsAgree(String fixture) throws Exception {
+        String url = fixturePath(fixture).toUri().toString();
+        WebDriver driver = browser();
+        driver.get(url);
+        RecipeDetailsPage page = new RecipeDetailsPage(driver);
+        assertSameRecipe(page.scrapeRecipePerField(), page.scrapeRecipeInOneCall());
+    }
+
+    // Both fixtures loading at once in tabs of one browser must each read as their own page
+    @Test
+    public void tabsOfOneBrowserReadTheirOwnPages() throws Exception {
+        TabPool tabs = new TabPool(1, 2, 50, true);
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        try {
+            try {
+                tabs.preWarm();
+                tabs.lease().close();
+            } catch (Exception e) {
+                throw new SkipException("Chrome not available for tab check: " + e.getMessage());
+            }
+            TabRecipeExtractor extractor = new TabRecipeExtractor(tabs, HostThrottle.unlimited(), null);
+            List<String> urls = new ArrayList<>();
+            List<Future<Recipe>> results = new ArrayList<>();
+            for (Object[] fixture : fixtures()) {
+                for (int round = 0; round < 2; round++) {
+                    String url = fixturePath((String) fixture[0]).toUri().toString();
+                    urls.add(url);
+                    results.add(workers.submit(() -> extractor.extract(url)));
+                }
+            }
+            for (int i = 0; i < urls.size(); i++) {
+                Recipe fromTab = results.get(i).get();
+                Recipe fromHttp = HttpRecipeExtractor.parse(Files.readString(Path.of(new URL(urls.get(i)).toURI()), StandardCharsets.UTF_8), urls.get(i));
+                assertSameRecipe(fromHttp, fromTab);
+            }
+        } finally {
+            workers.shutdownNow();
+            tabs.close();
+        }
+    }
+
+    // Only a browser that can't be started skips; failures once it runs are test failures
+    private WebDriver browser() {
+        if (driver == null) {
+            try {
+                driver = BrowserFactory.newDriver(true);
+            } catch (Exception e) {
+                throw new SkipException("Chrome not available for parity check: " + e.getMessage());
+            }
+        }
+        return driver;
+    }
+
+    private static void assertSameRecipe(Recipe expected, Recipe actual) {
+        Assert.assertEquals(norm(actual.Recipe_Name), norm(expected.Recipe_Name), "Recipe_Name");
+        Assert.assertEquals(norm(actual.Ingredients), norm(expected.Ingredients), "Ingredients");
+        Assert.assertEquals(norm(actual.Preparation_Time), norm(expected.Preparation_Time), "Preparation_Time");
+        Assert.assertEquals(norm(actual.Cooking_Time), norm(expected.Cooking_Time), "Cooking_Time");
+        Assert.assertEquals(norm(actual.Recipe_Description), norm(expected.Recipe_Description), "Recipe_Description");
+        Assert.assertEquals(norm(actual.Preparation_method), norm(expected.Preparation_method), "Preparation_method");
+        Assert.assertEquals(norm(actual.Nutrient_values), norm(expected.Nutrient_values), "Nutrient_values");
+        Assert.assertEquals(actual.Recipe_URL, expected.Recipe_URL, "Recipe_URL");
+        Assert.assertEquals(norm(actual.Recipe_Category), norm(expected.Recipe_Category), "Recipe_Category");
+        Assert.assertEquals(norm(actual.Food_Category), norm(expected.Food_Category), "Food_Category");
+        Assert.assertEquals(norm(actual.Tag), norm(expected.Tag), "Tag");
+        Assert.assertEquals(norm(actual.No_of_servings), norm(expected.No_of_servings), "No_of_servings");
+        Assert.assertEquals(norm(actual.Cuisine_category), norm(expected.Cuisine_category), "Cuisine_category");
+    }
+
+    // Line breaks differ slightly between a real layout engine and the parser, so compare on collapsed whitespace
+    private static String norm(String s) {
+        return s == null ? "" : s.replaceAll("\\s+", " ").trim();
+    }
+
+    private static String norm(List<String> list) {
+        return list == null ? "" : norm(String.join(" ", list));
+    }
+
+    private static Path fixturePath(String fixture) throws URISyntaxException {
+        URL resource = RecipeExtractorParityTest.class.getClassLoader().getResource(fixture);
+        Assert.assertNotNull(resource, "Missing fixture " + fixture);
+        return Path.of(resource.toURI());
+    }
+}
@@ -2,47 +2,72 @@ package tests;
 
 import baseClass.BaseTest;
 import driverFactory.BrowserFactory;
+import commons.CrawlFrontier;
+import commons.DbManager;
 import commons.ExcelUtils;
+import commons.IngredientMatcher;
+import commons.PageArchive;
 import commons.Recipe;
+import commons.RecipeFingerprint;
+import commons.WorkQueue;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.WebDriver;
 import org.testng.annotations.*;
-import pages.RecipeDetailsPage;
+import pages.ArchiveRecipeExtractor;
+import pages.ListingDiscovery;
+import pages.RecipeExtractor;
 import pages.RecipeListingPage;
-import utilities.ElementsUtil;
-
+import utilities.CrawlPipeline;
+import utilities.FieldStats;
+import utilities.HostThrottle;
+import utilities.PageLoadStats;
+import utilities.Metrics;
+import utilities.UrlNormalizer;
+import utilities.VisitedUrls;
+import utilities.WorkerThreads;
+
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 public class RecipeScraperOptimizedTest extends BaseTest {
     private static final Logger log = LogManager.getLogger(RecipeScraperOptimizedTest.class.getName());
 
-    private ExcelUtils.DietRules lchfRules, lfvRules;
-
-    //  Separate visited sets for each diet
-    private Set<String> visitedRecipesLCHF = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    private Set<String> visitedRecipesLFV = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // Every diet whose add/elimination tables this run fills
+    private List<ExcelUtils.DietRules> dietRules;
 
     private final AtomicInteger scrapedCount = new AtomicInteger(0);
-
-    private enum ScraperMode { ALL, FIRST_N, KEYWORD, SINGLE_URL }
+    private final AtomicInteger unchangedCount = new AtomicInteger(0);
+
+    // ---------------- Metrics ----------------
+    private static final Metrics.Counter scrapedTotal =
+            Metrics.counter("scraper_recipes_total", "Recipes by outcome", "result", "scraped");
+    private static final Metrics.Counter unchangedTotal =
+            Metrics.counter("scraper_recipes_total", "Recipes by outcome", "result", "unchanged");
+    private static final Metrics.Counter failedTotal =
+            Metrics.counter("scraper_recipes_total", "Recipes by outcome", "result", "failed");
+    private static final Metrics.Timer classificationTimer =
+            Metrics.timer("scraper_classification_seconds", "Time to classify one recipe against every diet");
+    private Map<String, RecipeFingerprint> fingerprints = Map.of();
+
+    enum ScraperMode { ALL, FIRST_N, KEYWORD, SINGLE_URL, REPLAY, RECLASSIFY, COORDINATOR, WORKER }
     private ScraperMode mode;
+    private RecipeExtractor extractor;
+
+    // ---------------- Page archive ----------------
+    private PageArchive.Writer archiveWriter;   // live modes with scraper.archiveDir set
+    private PageArchive.Reader archiveReader;   // REPLAY
 
     @BeforeClass
     public void setup() throws Exception {
         // Load diet rules
-        lchfRules = ExcelUtils.loadDietRules("Final list for LCHFElimination");
-        lfvRules = ExcelUtils.loadDietRules("Final list for LFV Elimination");
-
-        // Reset DB tables
-        db.resetTable("LCHF_add");
-        db.resetTable("LCHF_elimination");
-        db.resetTable("LFV_add");
-        db.resetTable("LFV_elimination");
+        dietRules = ExcelUtils.loadDietRules(cfg.dietSheets, cfg.rulesCacheDir.isEmpty() ? null : Path.of(cfg.rulesCacheDir));
 
         // Load mode from config
         try {
@@ -50,225 +75,433 @@ public class RecipeScraperOptimizedTest extends BaseTest {
         } catch (IllegalArgumentException e) {
             mode = ScraperMode.ALL; // fallback
         }
+
+        // The canonical recipe table is never reset, it is what RECLASSIFY works from
+        db.createTableIfNotExists(DbManager.RAW_TABLE);
+
+        // Reset DB tables, unless resuming an interrupted crawl (RECLASSIFY rewrites them itself,
+        // workers share them with the coordinator that reset them)
+        for (ExcelUtils.DietRules rules : dietRules) {
+            if (cfg.resume || cfg.incremental || mode == ScraperMode.RECLASSIFY || mode == ScraperMode.WORKER) {
+                db.createTableIfNotExists(rules.addTable());
+                db.createTableIfNotExists(rules.eliminationTable());
+            } else {
+                db.resetTable(rules.addTable());
+                db.resetTable(rules.eliminationTable());
+            }
+        }
+        db.createFrontierTables();
+        db.createWorkQueueTable();
+
+        // Fingerprints of what is already stored, for skipping unchanged pages
+        if (cfg.incremental) {
+            // recipes_raw too, so its rows without typed columns are backfilled as well
+            List<String> tables = new ArrayList<>(List.of(DbManager.RAW_TABLE));
+            for (ExcelUtils.DietRules rules : dietRules) {
+                tables.add(rules.addTable());
+                tables.add(rules.eliminationTable());
+            }
+            fingerprints = db.loadFingerprints(tables);
+            log.info("Incremental mode: " + fingerprints.size() + " stored recipes");
+        }
+
+        if (mode == ScraperMode.RECLASSIFY) {
+            log.info("Mode RECLASSIFY from " + DbManager.RAW_TABLE);
+            return;
+        }
+        if (mode == ScraperMode.REPLAY) {
+            if (cfg.archiveDir.isEmpty()) throw new IllegalStateException("REPLAY mode needs scraper.archiveDir");
+            archiveReader = new PageArchive.Reader(Path.of(cfg.archiveDir));
+            extractor = new ArchiveRecipeExtractor(archiveReader);
+            log.info("Mode REPLAY from " + cfg.archiveDir + ": " + archiveReader.urls(PageArchive.DETAIL).size() + " archived recipes");
+            return;
+        }
+        if (!cfg.archiveDir.isEmpty()) archiveWriter = new PageArchive.Writer(Path.of(cfg.archiveDir));
+        extractor = RecipeExtractor.forBackend(cfg.scraperBackend, driverPool, tabPool, throttle, archiveWriter);
+        log.info("Mode " + mode + " using " + cfg.scraperBackend + " backend");
     }
 
+    @AfterClass(alwaysRun = true)
+    public void closeArchive() throws IOException {
+        if (archiveWriter != null) {
+            log.info(archiveWriter.summary());
+            archiveWriter.close();
+        }
+        if (archiveReader != null) archiveReader.close();
+    }
+
+    // Multi-diet mode crawls once and classifies every recipe against all diets;
+    // otherwise each diet runs its own crawl from its own start URL
     @DataProvider(name = "dietData", parallel = true)
     public Object[][] dietData() {
-        return new Object[][]{
-                {"LCHF", cfg.scraperLCHFStartUrl, lchfRules, visitedRecipesLCHF},
-                {"LFV", cfg.scraperLFVStartUrl, lfvRules, visitedRecipesLFV}
-        };
+        if (cfg.multiDiet) {
+            List<String> names = dietRules.stream().map(rules -> rules.diet).toList();
+            return new Object[][]{
+                    {String.join("+", names), cfg.scraperStartUrl, dietRules, newVisitedUrls()}
+            };
+        }
+        Object[][] data = new Object[dietRules.size()][];
+        for (int i = 0; i < dietRules.size(); i++) {
+            ExcelUtils.DietRules rules = dietRules.get(i);
+            data[i] = new Object[]{rules.diet, cfg.startUrlFor(rules.diet), List.of(rules), newVisitedUrls()};
+        }
+        return data;
     }
 
-    @Test(dataProvider = "dietData")
-    public void scrapeDiet(String dietType, String startUrl, ExcelUtils.DietRules rules, Set<String> visitedRecipes)
-            throws SQLException, ExecutionException, InterruptedException {
+    private static VisitedUrls newVisitedUrls() {
+        return VisitedUrls.create(cfg.visitedMode, new UrlNormalizer(cfg.urlLowercasePath, cfg.urlDropParams), cfg.visitedExpected);
+    }
 
-        visitedRecipes.clear();
+    @Test(dataProvider = "dietData")
+    public void scrapeDiet(String dietType, String startUrl, List<ExcelUtils.DietRules> diets, VisitedUrls visitedRecipes)
+            throws SQLException, IOException, InterruptedException {
 
         switch (mode) {
-            case ALL -> runScraperAllParallel(startUrl, rules, dietType, visitedRecipes);
-            case FIRST_N -> runScraperLimitedParallel(startUrl, rules, dietType, cfg.scraperLimit, visitedRecipes);
-            case KEYWORD -> runScraperByKeywordParallel(startUrl, rules, dietType, cfg.scraperKeyword, visitedRecipes);
-            case SINGLE_URL -> runScraperForSingleRecipe(cfg.scraperSingleRecipeUrl, rules, dietType);
+            case ALL -> runScraperAllParallel(startUrl, diets, dietType, visitedRecipes);
+            case FIRST_N -> runScraperLimitedParallel(startUrl, diets, dietType, cfg.scraperLimit, visitedRecipes);
+            case KEYWORD -> runScraperByKeywordParallel(startUrl, diets, dietType, cfg.scraperKeyword, visitedRecipes);
+            case SINGLE_URL -> runScraperForSingleRecipe(cfg.scraperSingleRecipeUrl, diets, dietType);
+            case REPLAY -> runReplay(diets, dietType);
+            case RECLASSIFY -> runReclassify(diets, dietType);
+            case COORDINATOR -> runCoordinator(startUrl, diets, dietType, visitedRecipes);
+            case WORKER -> runWorker(diets, dietType);
         }
 
         // Summary
-        String addTable = dietType.equals("LCHF") ? "LCHF_add" : "LFV_add";
-        String elimTable = dietType.equals("LCHF") ? "LCHF_elimination" : "LFV_elimination";
-        log.info("[" + dietType + "] Summary:");
-        log.info(addTable + ": " + db.getRowCount(addTable));
-        log.info(elimTable + ": " + db.getRowCount(elimTable));
+        writeQueue.flush();
+        log.info(writeQueue.summary());
+        log.info(throttle.summary());
+        log.info(FieldStats.summary());
+        if ("selenium".equals(cfg.scraperBackend)) log.info(PageLoadStats.summary());
+        if (cfg.incremental) log.info("[" + dietType + "] Unchanged recipes skipped: " + unchangedCount.get());
+        for (ExcelUtils.DietRules rules : diets) {
+            log.info("[" + rules.diet + "] Summary:");
+            log.info(rules.addTable() + ": " + db.getRowCount(rules.addTable()));
+            log.info(rules.eliminationTable() + ": " + db.getRowCount(rules.eliminationTable()));
+        }
     }
 
     // ---------------- Single Recipe Mode ----------------
-    private void runScraperForSingleRecipe(String recipeUrl, ExcelUtils.DietRules rules, String dietType)
-            throws SQLException {
-        WebDriver driver = BrowserFactory.createDriver(cfg.headless);
+    private void runScraperForSingleRecipe(String recipeUrl, List<ExcelUtils.DietRules> diets, String dietType)
+            throws IOException, InterruptedException {
+        scrapeRecipeTask(recipeUrl, diets, dietType);
+    }
+
+    // ---------------- REPLAY Mode ----------------
+    // Re-extracts and re-classifies every archived detail page; no listing walk, network or browser
+    private void runReplay(List<ExcelUtils.DietRules> diets, String dietType) throws InterruptedException {
+        long start = System.nanoTime();
+        int concurrency = WorkerThreads.VIRTUAL.equals(cfg.scraperExecutor) ? cfg.maxInFlight : cfg.threadPoolSize;
+        CrawlPipeline pipeline = new CrawlPipeline(cfg.scraperExecutor, concurrency, cfg.queueCapacity, 0, url -> {
+            try {
+                scrapeRecipeTask(url, diets, dietType);
+            } catch (Exception e) {
+                failedTotal.inc();
+                throw e;
+            }
+        });
         try {
-            driver.get(recipeUrl);
-            RecipeDetailsPage detailsPage = new RecipeDetailsPage(driver);
-            Recipe r = detailsPage.scrapeRecipe();
-            classifyAndStore(r, rules, dietType);
+            for (String url : archiveReader.urls(PageArchive.DETAIL)) {
+                pipeline.submit(url);
+            }
         } finally {
-            BrowserFactory.quitDriver();
+            pipeline.finish();
         }
+        log.info(String.format("Finished REPLAY mode. %d recipes replayed, %d failed, in %.1fs",
+                pipeline.getCompleted(), pipeline.getFailed(), (System.nanoTime() - start) / 1e9));
     }
 
-    // ---------------- FIRST_N Mode with Pagination ----------------
-    private void runScraperLimitedParallel(String startUrl, ExcelUtils.DietRules rules, String dietType, int limit,
-                                           Set<String> visitedRecipes)
-            throws SQLException, InterruptedException, ExecutionException {
-
-        WebDriver listingDriver = BrowserFactory.createDriver(cfg.headless);
-        listingDriver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(40));
-        listingDriver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
-
-        listingDriver.get(startUrl);
-        RecipeListingPage listingPage = new RecipeListingPage(listingDriver);
-
-        boolean hasNextPage = true;
-        int totalScraped = 0;
-
-        while (hasNextPage && totalScraped < limit) {
-            // Get recipes for this page
-            List<String> recipeUrls = listingPage.getRecipeUrls(new ArrayList<>(visitedRecipes));
-
-            if (!recipeUrls.isEmpty()) {
-                // Keep only up to "remaining" recipes
-                int remaining = limit - totalScraped;
-                List<String> batch = recipeUrls.size() > remaining
-                        ? recipeUrls.subList(0, remaining)
-                        : recipeUrls;
-
-             log.info("Found " + batch.size() + " recipes on this page...");
-                totalScraped += runScrapeBatch(batch, rules, dietType, visitedRecipes);
-                log.info("Total scraped so far = " + totalScraped);
+    // ---------------- RECLASSIFY Mode ----------------
+    // Applies the current rules to the stored recipes: only URL and ingredients are streamed from
+    // recipes_raw, then each diet's tables are rebuilt from it in one transaction
+    private void runReclassify(List<ExcelUtils.DietRules> diets, String dietType) throws SQLException {
+        long start = System.nanoTime();
+        Map<String, List<String>> addUrls = new LinkedHashMap<>();
+        diets.forEach(rules -> addUrls.put(rules.diet, new ArrayList<>()));
+
+        long stored = db.streamRawIngredients(cfg.reclassifyFetchSize, (url, ingredients) -> {
+            List<String> lines = List.of(ingredients == null ? "" : ingredients);
+            for (ExcelUtils.DietRules rules : diets) {
+                long t = System.nanoTime();
+                IngredientMatcher.Result match = rules.matcher().match(lines);
+                classificationTimer.recordSince(t);
+                if (!match.hasElimination() && match.hasAdd()) addUrls.get(rules.diet).add(url);
             }
+        });
+        if (stored == 0) {
+            // Nothing to rebuild from (tables filled before recipes_raw existed): leave them alone
+            log.warn("[" + dietType + "] " + DbManager.RAW_TABLE + " is empty, run a crawl first; diet tables left unchanged");
+            return;
+        }
 
-            // Stop if reached limit
-            if (totalScraped >= limit) break;
-
-            // Go to next page
-            hasNextPage = listingPage.goToNextPage();
+        for (ExcelUtils.DietRules rules : diets) {
+            int[] rows = db.rewriteDietTables(rules.addTable(), rules.eliminationTable(), addUrls.get(rules.diet));
+            Metrics.counter("scraper_recipes_classified_total", "Recipes per diet and table",
+                    "diet", rules.diet, "result", "added").add(rows[0]);
+            Metrics.counter("scraper_recipes_classified_total", "Recipes per diet and table",
+                    "diet", rules.diet, "result", "eliminated").add(rows[1]);
         }
+        log.info(String.format("Finished RECLASSIFY mode. %d stored recipes against %d diet(s) in %.1fs",
+                stored, diets.size(), (System.nanoTime() - start) / 1e9));
+    }
 
-        listingDriver.quit();
+    // ---------------- FIRST_N Mode with Pagination ----------------
+    private void runScraperLimitedParallel(String startUrl, List<ExcelUtils.DietRules> diets, String dietType, int limit,
+                                           VisitedUrls visitedRecipes)
+            throws InterruptedException, SQLException {
+        int totalScraped = crawlListing(startUrl, diets, dietType, limit, url -> true, visitedRecipes, null);
         log.info("Finished FIRST_N mode. Total recipes scraped = " + totalScraped);
     }
 
     // ---------------- ALL Mode ----------------
-    private void runScraperAllParallel(String startUrl, ExcelUtils.DietRules rules, String dietType,
-                                       Set<String> visitedRecipes)
-            throws SQLException, InterruptedException {
-
-        WebDriver listingDriver = BrowserFactory.createDriver(cfg.headless);
-        listingDriver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(40));
-        listingDriver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
-
-        ElementsUtil util = new ElementsUtil(listingDriver);
-        listingDriver.get(startUrl);
-        RecipeListingPage listingPage = new RecipeListingPage(listingDriver);
-
-        boolean hasNextPage = true;
-        int totalScraped = 0;
-
-        while (hasNextPage) {
-            List<String> recipeUrls = listingPage.getRecipeUrls(new ArrayList<>(visitedRecipes));
-            if (!recipeUrls.isEmpty()) {
-                System.out.println("Found " + recipeUrls.size() + " recipes on this page...");
-                totalScraped += runScrapeBatch(recipeUrls, rules, dietType, visitedRecipes);
-                log.info("Total scraped so far = " + totalScraped);
+    private void runScraperAllParallel(String startUrl, List<ExcelUtils.DietRules> diets, String dietType,
+                                       VisitedUrls visitedRecipes)
+            throws InterruptedException, SQLException {
+        int totalScraped = crawlListing(startUrl, diets, dietType, 0, url -> true, visitedRecipes, null);
+        log.info("Finished ALL mode. Total recipes scraped = " + totalScraped);
+    }
+
+    // ---------------- Keyword Mode ----------------
+    private void runScraperByKeywordParallel(String startUrl, List<ExcelUtils.DietRules> diets, String dietType,
+                                             String keyword, VisitedUrls visitedRecipes)
+            throws InterruptedException, SQLException {
+        String kw = keyword.toLowerCase();
+        int totalScraped = crawlListing(startUrl, diets, dietType, 0, url -> url.toLowerCase().contains(kw), visitedRecipes, null);
+        log.info("Finished KEYWORD mode. Total recipes scraped = " + totalScraped);
+    }
+
+    // ---------------- COORDINATOR Mode ----------------
+    // Walks the listing like ALL mode but queues the recipe URLs in crawl_queue for WORKER processes
+    // instead of scraping them, then waits until the workers have drained the queue
+    private void runCoordinator(String startUrl, List<ExcelUtils.DietRules> diets, String dietType,
+                                VisitedUrls visitedRecipes) throws InterruptedException, SQLException {
+        long start = System.nanoTime();
+        WorkQueue queue = new WorkQueue(db, writeQueue, dietType, cfg.distributedWorkerId, cfg.distributedLeaseMs, cfg.maxAttempts);
+        try {
+            if (cfg.resume) {
+                queue.reopen();
+            } else {
+                queue.reset();
+            }
+            int queued = crawlListing(startUrl, diets, dietType, 0, url -> true, visitedRecipes, queue);
+            log.info("[" + dietType + "] Queued " + queued + " recipe URLs for the workers");
+            // An interrupted walk leaves the queue open, so workers keep waiting for the resumed coordinator
+            if (!db.loadCheckpoint(dietType).listingFinished) return;
+            queue.markClosed();
+
+            while (cfg.distributedWait && queue.remaining() > 0) {
+                log.info("[" + dietType + "] Waiting for workers: " + queue.counts());
+                Thread.sleep(cfg.checkpointIntervalMs);
             }
-            hasNextPage = listingPage.goToNextPage();
+            log.info(String.format("Finished COORDINATOR mode. %s in %.1fs", queue.counts(), (System.nanoTime() - start) / 1e9));
+        } finally {
+            queue.close();
         }
-
-        listingDriver.quit();
-       log.info("Finished ALL mode. Total recipes scraped = " + totalScraped);
     }
 
-    // ---------------- Keyword Mode ----------------
-    private void runScraperByKeywordParallel(String startUrl, ExcelUtils.DietRules rules, String dietType,
-                                             String keyword, Set<String> visitedRecipes)
-            throws SQLException, InterruptedException, ExecutionException {
-
-        WebDriver listingDriver = BrowserFactory.createDriver(cfg.headless);
-        listingDriver.get(startUrl);
-        RecipeListingPage listingPage = new RecipeListingPage(listingDriver);
-
-        boolean hasNextPage = true;
-        List<String> keywordUrls = new ArrayList<>();
-        while (hasNextPage) {
-            List<String> recipeUrls = listingPage.getRecipeUrls(new ArrayList<>(visitedRecipes));
-            for (String url : recipeUrls) {
-                if (url.toLowerCase().contains(keyword.toLowerCase()) && visitedRecipes.add(url)) {
-                    keywordUrls.add(url);
+    // ---------------- WORKER Mode ----------------
+    // Claims batches of URLs from crawl_queue and scrapes them through a local pipeline until the
+    // coordinator has closed the queue and nothing is left pending or leased by any worker
+    private void runWorker(List<ExcelUtils.DietRules> diets, String dietType) throws InterruptedException, SQLException {
+        long start = System.nanoTime();
+        WorkQueue queue = new WorkQueue(db, writeQueue, dietType, cfg.distributedWorkerId, cfg.distributedLeaseMs, cfg.maxAttempts);
+        int concurrency = WorkerThreads.VIRTUAL.equals(cfg.scraperExecutor) ? cfg.maxInFlight : cfg.threadPoolSize;
+        CrawlPipeline pipeline = new CrawlPipeline(cfg.scraperExecutor, concurrency, cfg.queueCapacity, 0, url -> {
+            try {
+                scrapeRecipeTask(url, diets, dietType);
+                queue.complete(url);
+            } catch (Exception e) {
+                queue.fail(url);
+                failedTotal.inc();
+                throw e;
+            }
+        });
+        log.info("[" + dietType + "] Worker " + queue.getWorkerId() + " started");
+        try {
+            while (true) {
+                // Claim only what the pipeline can take, so leased URLs don't sit in a full local queue
+                int room = Math.min(cfg.distributedBatchSize, cfg.queueCapacity - pipeline.getQueueDepth());
+                List<String> urls = room > 0 ? queue.claim(room) : List.of();
+                if (urls.isEmpty()) {
+                    if (room > 0 && queue.isClosed() && queue.remaining() == 0) break;
+                    Thread.sleep(cfg.distributedPollMs);
+                    continue;
                 }
+                for (String url : urls) pipeline.submit(url);
             }
-            hasNextPage = listingPage.goToNextPage();
+        } finally {
+            pipeline.finish();
+            queue.close();
         }
-        BrowserFactory.quitDriver();
-
-        ExecutorService executor = Executors.newFixedThreadPool(cfg.threadPoolSize);
-        List<Future<?>> futures = new ArrayList<>();
-        for (String url : keywordUrls) {
-            futures.add(executor.submit(() -> {
-                try {
-                    scrapeRecipeTask(url, rules, dietType);
-                } catch (SQLException e) {
-                    e.printStackTrace();
+        log.info(String.format("Finished WORKER mode. %d recipes scraped, %d failed, in %.1fs",
+                pipeline.getCompleted(), pipeline.getFailed(), (System.nanoTime() - start) / 1e9));
+    }
+
+    // ---------------- Pipelined listing crawl ----------------
+    // Listing discovery streams recipe URLs into the pipeline queue while the workers scrape them,
+    // so pagination never waits for the slowest recipe on a page. limit <= 0 means no limit.
+    // Every URL's state and the listing position are checkpointed to the crawl frontier.
+    // With a work queue the URLs are handed to WORKER processes instead of scraped here.
+    private int crawlListing(String startUrl, List<ExcelUtils.DietRules> diets, String dietType, int limit,
+                             Predicate<String> urlFilter, VisitedUrls visitedRecipes, WorkQueue workQueue)
+            throws InterruptedException, SQLException {
+
+        CrawlFrontier frontier = new CrawlFrontier(db, writeQueue, dietType, cfg.checkpointIntervalMs);
+        // A queued URL is DONE for the coordinator, so it must be in crawl_queue before a checkpoint says so
+        if (workQueue != null) frontier.addCheckpointFlush(workQueue::flushEnqueued);
+        if (cfg.resume) {
+            frontier.load();
+            visitedRecipes.addAll(frontier.knownUrls());
+        } else {
+            frontier.reset();
+        }
+
+        int concurrency = WorkerThreads.VIRTUAL.equals(cfg.scraperExecutor) ? cfg.maxInFlight : cfg.threadPoolSize;
+        CrawlPipeline pipeline = new CrawlPipeline(cfg.scraperExecutor, concurrency, cfg.queueCapacity, limit, url -> {
+            frontier.markInFlight(url);
+            try {
+                if (workQueue != null) {
+                    workQueue.enqueue(url);
+                } else {
+                    scrapeRecipeTask(url, diets, dietType);
                 }
-            }));
+                frontier.markDone(url);
+            } catch (Exception e) {
+                frontier.markFailed(url);
+                failedTotal.inc();
+                throw e;
+            }
+        });
+        Metrics.gauge("scraper_pipeline_queue_depth", "Recipe URLs waiting for a worker", pipeline::getQueueDepth);
+        try {
+            // Work left pending or in flight by the interrupted run goes first
+            for (String url : frontier.unfinishedUrls(cfg.maxAttempts)) {
+                frontier.markPending(url); // before submit, so a fast worker's IN_FLIGHT/DONE is never undone
+                if (!pipeline.submit(url)) break;
+            }
+
+            CrawlFrontier.Checkpoint position = frontier.getListingPosition();
+            if (!position.listingFinished && !pipeline.isLimitReached()) {
+                ListingDiscovery discovery = "pages".equals(cfg.discoveryMode)
+                        ? ListingDiscovery.detect(startUrl, throttle, cfg.discoveryPageParam, archiveWriter) : null;
+                boolean listingFinished = (discovery != null)
+                        ? discoverByPageUrls(discovery, position, pipeline, frontier, dietType, urlFilter, visitedRecipes)
+                        : discoverByClicking(startUrl, position, pipeline, frontier, dietType, urlFilter, visitedRecipes);
+                if (listingFinished) frontier.markListingFinished();
+            }
+        } finally {
+            pipeline.finish();
+            frontier.close();
         }
+        return pipeline.getCompleted();
+    }
 
-        for (Future<?> f : futures) f.get();
-        executor.shutdown();
-        executor.awaitTermination(1, TimeUnit.HOURS);
+    // Fetches many listing pages at once by page URL; recipe URLs are queued as each page arrives
+    private boolean discoverByPageUrls(ListingDiscovery discovery, CrawlFrontier.Checkpoint position, CrawlPipeline pipeline,
+                                       CrawlFrontier frontier, String dietType, Predicate<String> urlFilter,
+                                       VisitedUrls visitedRecipes) throws InterruptedException {
+        return discovery.run(position.listingPage, cfg.discoveryParallelism, pipeline::isLimitReached, (page, pageUrl, recipeUrls) -> {
+            log.info("[" + dietType + "] Found " + recipeUrls.size() + " recipes on page " + page + ", queue depth " + pipeline.getQueueDepth());
+            enqueueRecipeUrls(recipeUrls, pipeline, frontier, urlFilter, visitedRecipes);
+            // Resume restarts at the lowest page not fetched yet; pages above it may be fetched twice
+            int resumePage = discovery.getResumePage();
+            frontier.recordListingPosition(resumePage, discovery.pageUrl(resumePage));
+        });
     }
 
-    // ---------------- Scrape Task ----------------
-    private void scrapeRecipeTask(String url, ExcelUtils.DietRules rules, String dietType) throws SQLException {
-        WebDriver driver = BrowserFactory.createDriver(cfg.headless);
+    // Fallback when the page-number URL pattern is unknown: one browser clicks through Next
+    private boolean discoverByClicking(String startUrl, CrawlFrontier.Checkpoint position, CrawlPipeline pipeline,
+                                       CrawlFrontier frontier, String dietType, Predicate<String> urlFilter,
+                                       VisitedUrls visitedRecipes) throws InterruptedException {
+        // Owned by this method, which quits it
+        WebDriver listingDriver = BrowserFactory.newDriver(cfg.headless);
         try {
-            log.info("[" + dietType + "] Scraping recipe: " + url);
-            driver.get(url);
-
-            RecipeDetailsPage detailsPage = new RecipeDetailsPage(driver);
-            Recipe r = detailsPage.scrapeRecipe();
-            classifyAndStore(r, rules, dietType);
-
-            int count = scrapedCount.incrementAndGet();
-            log.info("[" + dietType + "] Scraped recipes so far: " + count);
+            listingDriver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(40));
+            // RecipeListingPage waits explicitly, so an implicit wait would only stretch the
+            // "no Next button" check on the last page
+            listingDriver.manage().timeouts().implicitlyWait(Duration.ZERO);
+
+            int page = position.listingPage;
+            String firstUrl = position.listingUrl != null ? position.listingUrl : startUrl;
+            try (HostThrottle.Permit permit = throttle.acquire(firstUrl)) {
+                listingDriver.get(firstUrl);
+            }
+            RecipeListingPage listingPage = new RecipeListingPage(listingDriver, throttle);
 
+            boolean hasNextPage = true;
+            while (hasNextPage && !pipeline.isLimitReached()) {
+                frontier.recordListingPosition(page, listingDriver.getCurrentUrl());
+                if (archiveWriter != null) {
+                    archiveWriter.appendQuietly(PageArchive.LISTING, listingDriver.getCurrentUrl(), listingDriver.getPageSource());
+                }
+                List<String> recipeUrls = listingPage.getRecipeUrls(visitedRecipes);
+                log.info("[" + dietType + "] Found " + recipeUrls.size() + " recipes on page " + page + ", queue depth " + pipeline.getQueueDepth());
+                enqueueRecipeUrls(recipeUrls, pipeline, frontier, urlFilter, visitedRecipes);
+                if (pipeline.isLimitReached()) break;
+                hasNextPage = listingPage.goToNextPage();
+                page++;
+            }
+            return !hasNextPage;
         } finally {
-            BrowserFactory.quitDriver();
+            listingDriver.quit();
         }
     }
 
-    // ---------------- Classification ----------------
-    private void classifyAndStore(Recipe r, ExcelUtils.DietRules rules, String dietType) throws SQLException {
-        Set<String> ingSet = new HashSet<>();
-        if (r.Ingredients != null)
-            r.Ingredients.forEach(ing -> ingSet.add(ing.toLowerCase().trim()));
-
-        boolean hasElimination = rules.eliminate.stream().anyMatch(ingSet::contains);
-        boolean hasAdd = rules.add.stream().anyMatch(ingSet::contains);
-
-        if (!hasElimination && hasAdd) {
-            String addTable = dietType.equals("LCHF") ? "LCHF_add" : "LFV_add";
-            db.insertRecipe(addTable, r);
-            log.info("[" + dietType + "] Added to table " + addTable + ": " + r.Recipe_Name);
-        } else {
-            String elimTable = dietType.equals("LCHF") ? "LCHF_elimination" : "LFV_elimination";
-            db.insertRecipe(elimTable, r);
-            log.info("[" + dietType + "] Added to table " + elimTable + ": " + r.Recipe_Name);
+    private void enqueueRecipeUrls(List<String> recipeUrls, CrawlPipeline pipeline, CrawlFrontier frontier,
+                                   Predicate<String> urlFilter, VisitedUrls visitedRecipes) throws InterruptedException {
+        for (String url : recipeUrls) {
+            if (pipeline.isLimitReached()) break; // FIRST_N limit reached
+            // The URL is scraped, checkpointed and stored as linked; its canonical form is only the
+            // dedup key. add() is the check, so two pages linking one recipe can't both queue it.
+            if (!urlFilter.test(url) || !visitedRecipes.add(url)) continue;
+            // Before submit, so a fast worker's IN_FLIGHT/DONE is never undone. If another page's URLs
+            // hit the limit in between, this one stays PENDING and a resumed run's limit bounds it.
+            frontier.markPending(url);
+            if (!pipeline.submit(url)) break;
         }
     }
 
-    // ---------------- Run batch scraper ----------------
-    private int runScrapeBatch(List<String> urls, ExcelUtils.DietRules rules, String dietType,
-                               Set<String> visitedRecipes)
-            throws InterruptedException {
-
-        ExecutorService executor = Executors.newFixedThreadPool(cfg.threadPoolSize);
-        AtomicInteger batchCount = new AtomicInteger(0);
-
-        for (String url : urls) {
-            if (visitedRecipes.add(url)) {
-                executor.submit(() -> {
-                    try {
-                        scrapeRecipeTask(url, rules, dietType);
-                        batchCount.incrementAndGet();
-                        log.info("Scraped: " + url);
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                    }
-                });
-            }
+    // ---------------- Scrape Task ----------------
+    private void scrapeRecipeTask(String url, List<ExcelUtils.DietRules> diets, String dietType)
+            throws IOException, InterruptedException {
+        log.info("[" + dietType + "] Scraping recipe: " + url);
+        RecipeFingerprint known = fingerprints.get(url);
+        Recipe r = (known == null) ? extractor.extract(url) : extractor.extractIfChanged(url, known);
+        if (r != null) r.Content_Hash = RecipeFingerprint.contentHash(r);
+
+        // Incremental mode: nothing to write when the server or the content hash says unchanged
+        if (r == null || (known != null && known.contentHash.equals(r.Content_Hash))) {
+            unchangedTotal.inc();
+            int unchanged = unchangedCount.incrementAndGet();
+            log.info("[" + dietType + "] Unchanged, skipped (" + unchanged + " so far): " + url);
+            return;
         }
+        classifyAndStore(r, diets);
+        scrapedTotal.inc();
 
-        executor.shutdown();
-        executor.awaitTermination(30, TimeUnit.MINUTES);
-        return batchCount.get();
+        int count = scrapedCount.incrementAndGet();
+        log.info("[" + dietType + "] Scraped recipes so far: " + count);
+    }
+
+    // ---------------- Classification ----------------
+    // One scraped recipe is stored once in recipes_raw and routed to the add or elimination table of
+    // every diet in the crawl. Rows go to the write-behind queue, so the scraping thread never waits on Postgres.
+    private void classifyAndStore(Recipe r, List<ExcelUtils.DietRules> diets) throws InterruptedException {
+        writeQueue.submit(DbManager.RAW_TABLE, r);
+        for (ExcelUtils.DietRules rules : diets) {
+            long start = System.nanoTime();
+            IngredientMatcher.Result match = rules.matcher().match(r.Ingredients);
+            classificationTimer.recordSince(start);
+
+            boolean add = !match.hasElimination() && match.hasAdd();
+            String table = add ? rules.addTable() : rules.eliminationTable();
+            // A re-crawled recipe may have moved between the diet's two tables
+            String staleTable = cfg.incremental ? (add ? rules.eliminationTable() : rules.addTable()) : null;
+            writeQueue.submit(table, r, staleTable);
+            Metrics.counter("scraper_recipes_classified_total", "Recipes per diet and table",
+                    "diet", rules.diet, "result", add ? "added" : "eliminated").inc();
+            log.info("[" + rules.diet + "] Queued for table " + table + ": " + r.Recipe_Name
+                    + " (eliminate=" + match.eliminated + ", add=" + match.added + ")");
+        }
     }
 }
@@ -0,0 +1,87 @@
+package tests;
+
+import commons.Recipe;
+import commons.RecipeValues;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class RecipeValuesTest {
+
+    @Test
+    public void parsesDisplayStringsIntoTypedValues() {
+        Recipe r = new Recipe();
+        r.Preparation_Time = "15 mins";
+        r.Cooking_Time = "1 hour 10 mins";
+        r.No_of_servings = "4 servings";
+        r.Nutrient_values = "Energy:224 cal|Protein:11.2 g|Carbohydrates:6.4 g|Fiber:1.1 g|Fat:16.8 g|Sodium:120 mg";
+        r.Ingredients = List.of("for the marinade\n1 cup thick curds (dahi)\n\n2 cups paneer (cottage cheese) cubes", "1 tbsp butter");
+
+        RecipeValues v = new RecipeValues(r);
+
+        Assert.assertEquals(v.prepMinutes, Integer.valueOf(15));
+        Assert.assertEquals(v.cookMinutes, Integer.valueOf(70));
+        Assert.assertEquals(v.servings, Integer.valueOf(4));
+        Assert.assertEquals(v.energyKcal, new BigDecimal("224"));
+        Assert.assertEquals(v.proteinG, new BigDecimal("11.2"));
+        Assert.assertEquals(v.carbsG, new BigDecimal("6.4"));
+        Assert.assertEquals(v.fiberG, new BigDecimal("1.1"));
+        Assert.assertEquals(v.fatG, new BigDecimal("16.8"));
+        Assert.assertEquals(v.ingredientLines, new String[]{"for the marinade", "1 cup thick curds (dahi)",
+                "2 cups paneer (cottage cheese) cubes", "1 tbsp butter"});
+        Assert.assertEquals(v.ingredientTerms, new String[]{"butter", "cheese", "cottage", "cubes", "cup", "cups",
+                "curds", "dahi", "for", "marinade", "paneer", "tbsp", "the", "thick"});
+    }
+
+    @Test
+    public void missingOrUnreadableValuesAreNull() {
+        Recipe r = new Recipe();
+        r.Preparation_Time = "";
+        r.Cooking_Time = "overnight";
+        r.No_of_servings = "Makes a jar";
+        r.Nutrient_values = "Energy:n/a";
+
+        RecipeValues v = new RecipeValues(r);
+
+        Assert.assertNull(v.prepMinutes);
+        Assert.assertNull(v.cookMinutes);
+        Assert.assertNull(v.servings);
+        Assert.assertNull(v.energyKcal);
+        Assert.assertNull(v.proteinG);
+        Assert.assertEquals(v.ingredientLines.length, 0);
+        Assert.assertEquals(v.ingredientTerms.length, 0);
+    }
+
+    @Test
+    public void numbersTooLongForTheColumnAreNull() {
+        Recipe r = new Recipe();
+        r.Preparation_Time = "99999999999 mins";
+        r.Cooking_Time = "99999999999";
+        r.No_of_servings = "99999999999 servings";
+
+        RecipeValues v = new RecipeValues(r);
+
+        Assert.assertNull(v.prepMinutes);
+        Assert.assertNull(v.cookMinutes);
+        Assert.assertNull(v.servings);
+    }
+
+    @Test
+    public void readsOtherTimeAndAmountFormats() {
+        Recipe r = new Recipe();
+        r.Preparation_Time = "1.5 hrs";
+        r.Cooking_Time = "20";
+        r.No_of_servings = "2-3 servings";
+        r.Nutrient_values = "Energy:1,200 kcal|Protein:500 mg";
+
+        RecipeValues v = new RecipeValues(r);
+
+        Assert.assertEquals(v.prepMinutes, Integer.valueOf(90));
+        Assert.assertEquals(v.cookMinutes, Integer.valueOf(20));
+        Assert.assertEquals(v.servings, Integer.valueOf(2));
+        Assert.assertEquals(v.energyKcal, new BigDecimal("1200"));
+        Assert.assertEquals(v.proteinG, new BigDecimal("0.500"));
+    }
+}
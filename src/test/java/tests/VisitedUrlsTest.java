@@ -0,0 +1,91 @@
+package tests;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import utilities.UrlNormalizer;
+import utilities.VisitedUrls;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VisitedUrlsTest {
+
+    private final UrlNormalizer normalizer = new UrlNormalizer(true, List.of("sessionid"));
+
+    @Test
+    public void canonicalizesRecipeUrlVariants() {
+        String canonical = "https://www.tarladalal.com/paneer-tikka-recipe-12345";
+        for (String variant : List.of(
+                "https://www.tarladalal.com/Paneer-Tikka-Recipe-12345",
+                "HTTPS://WWW.TarlaDalal.com/paneer-tikka-recipe-12345/",
+                "https://www.tarladalal.com:443/paneer-tikka-recipe-12345#ingredients",
+                "https://www.tarladalal.com//paneer-tikka-recipe-12345?utm_source=fb&utm_medium=social",
+                "https://www.tarladalal.com/paneer-tikka-recipe-12345?fbclid=abc&SessionId=9",
+                "  https://www.tarladalal.com/paneer-tikka-recipe-12345?  ")) {
+            Assert.assertEquals(normalizer.normalize(variant), canonical, variant);
+        }
+    }
+
+    @Test
+    public void keepsMeaningfulQueryParametersInStableOrder() {
+        Assert.assertEquals(normalizer.normalize("https://example.com/recipes/?page=2&utm_campaign=x&cat=Snacks"),
+                "https://example.com/recipes?cat=Snacks&page=2");
+        Assert.assertEquals(normalizer.normalize("https://example.com/recipes?cat=Snacks&page=2"),
+                normalizer.normalize("https://example.com/recipes?page=2&cat=Snacks"));
+        Assert.assertEquals(normalizer.normalize("http://example.com:8080"), "http://example.com:8080/");
+        // ref may select content, so it is only dropped when configured
+        Assert.assertEquals(normalizer.normalize("https://example.com/r?ref=print"), "https://example.com/r?ref=print");
+        // Case-sensitive servers keep the path as is
+        Assert.assertEquals(new UrlNormalizer().normalize("https://Example.com/Recipe"), "https://example.com/Recipe");
+        // Not an http(s) URL: left alone
+        Assert.assertEquals(normalizer.normalize("javascript:void(0)"), "javascript:void(0)");
+        Assert.assertEquals(normalizer.normalize("/relative/Path"), "/relative/Path");
+    }
+
+    @Test
+    public void exactAndCompactSetsAgree() {
+        for (String mode : List.of(VisitedUrls.EXACT, VisitedUrls.COMPACT)) {
+            VisitedUrls visited = VisitedUrls.create(mode, normalizer, 16);
+            Assert.assertTrue(visited.add("https://example.com/a"), mode);
+            Assert.assertFalse(visited.add("https://EXAMPLE.com/a/?utm_source=x"), mode);
+            Assert.assertTrue(visited.contains("https://example.com/A#top"), mode);
+            Assert.assertFalse(visited.contains("https://example.com/b"), mode);
+
+            // Grows well past its initial size
+            for (int i = 0; i < 50_000; i++) visited.add("https://example.com/recipe-" + i);
+            Assert.assertEquals(visited.size(), 50_001, mode);
+            for (int i = 0; i < 50_000; i += 997) {
+                Assert.assertTrue(visited.contains("https://example.com/Recipe-" + i + "/"), mode);
+            }
+            Assert.assertFalse(visited.contains("https://example.com/recipe-50000"), mode);
+        }
+    }
+
+    // add() is an atomic check-and-insert: of many threads adding the same URLs, exactly one wins each
+    @Test
+    public void concurrentAddsCountEachUrlOnce() throws Exception {
+        for (String mode : List.of(VisitedUrls.EXACT, VisitedUrls.COMPACT)) {
+            VisitedUrls visited = VisitedUrls.create(mode, normalizer, 1000);
+            AtomicInteger firstAdds = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> futures = new java.util.ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    futures.add(pool.submit(() -> {
+                        for (int i = 0; i < 20_000; i++) {
+                            if (visited.add("https://example.com/r/" + i)) firstAdds.incrementAndGet();
+                        }
+                    }));
+                }
+                for (Future<?> f : futures) f.get();
+            } finally {
+                pool.shutdown();
+            }
+            Assert.assertEquals(firstAdds.get(), 20_000, mode);
+            Assert.assertEquals(visited.size(), 20_000, mode);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package utilities;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Producer/consumer pipeline for a crawl: the listing walker submits recipe URLs into a bounded queue
+// and workers drain it. A full queue blocks the producer (backpressure).
+// "platform" executor: a fixed set of long-lived workers, and an end-of-stream marker per worker
+// shuts them down once the queue is empty.
+// "virtual" executor: one dispatcher hands each URL to its own (virtual) thread, and a semaphore
+// sized to the browsers/connections available bounds how many scrapes are in flight.
+// If every worker (or the dispatcher) is interrupted, the pipeline stops: the queue is cleared and
+// submit() fails instead of blocking a producer on a queue nobody drains.
+public class CrawlPipeline {
+    private static final Logger log = LogManager.getLogger(CrawlPipeline.class.getName());
+
+    public interface UrlTask {
+        void scrape(String url) throws Exception;
+    }
+
+    // Compared by identity, so it can never collide with a real URL
+    private static final String END_OF_STREAM = new String("END_OF_STREAM");
+
+    // How often a producer waiting for queue space checks whether the workers are still there
+    private static final long OFFER_WAIT_MS = 100;
+
+    private final BlockingQueue<String> queue;
+    private final ExecutorService workers;
+    private final int workerCount;
+    private final int limit;
+    private final UrlTask task;
+
+    // Virtual mode only
+    private final Thread dispatcher;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    private final AtomicInteger accepted = new AtomicInteger(0);
+    private final AtomicInteger completed = new AtomicInteger(0);
+    private final AtomicInteger failed = new AtomicInteger(0);
+    private volatile boolean finished = false;
+    private final AtomicInteger liveWorkers;
+    private volatile boolean stopped = false;
+
+    // limit <= 0 accepts every submitted URL
+    public CrawlPipeline(int workerCount, int queueCapacity, int limit, UrlTask task) {
+        this(WorkerThreads.PLATFORM, workerCount, queueCapacity, limit, task);
+    }
+
+    // concurrency is the worker count for "platform" and the in-flight bound for "virtual"
+    public CrawlPipeline(String executor, int concurrency, int queueCapacity, int limit, UrlTask task) {
+        this.limit = limit;
+        this.task = task;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        if (WorkerThreads.VIRTUAL.equals(executor)) {
+            this.workerCount = 1;
+            this.maxInFlight = concurrency;
+            this.inFlight = new Semaphore(concurrency);
+            this.workers = WorkerThreads.perTaskExecutor("scraper");
+            this.liveWorkers = new AtomicInteger(1);
+            this.dispatcher = new Thread(this::dispatch, "crawl-dispatcher");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        } else {
+            this.workerCount = concurrency;
+            this.maxInFlight = concurrency;
+            this.inFlight = null;
+            this.dispatcher = null;
+            this.workers = Executors.newFixedThreadPool(concurrency);
+            this.liveWorkers = new AtomicInteger(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                workers.submit(this::drain);
+            }
+        }
+    }
+
+    // Blocks while the queue is full. Returns false, without queueing, once the limit has been reached.
+    // Throws IllegalStateException once the workers have stopped.
+    public boolean submit(String url) throws InterruptedException {
+        if (finished) throw new IllegalStateException("Pipeline already finished");
+        checkRunning();
+        while (true) {
+            int current = accepted.get();
+            if (limit > 0 && current >= limit) return false;
+            if (accepted.compareAndSet(current, current + 1)) break;
+        }
+        while (!queue.offer(url, OFFER_WAIT_MS, TimeUnit.MILLISECONDS)) {
+            if (stopped) {
+                accepted.decrementAndGet();
+                checkRunning();
+            }
+        }
+        return true;
+    }
+
+    private void checkRunning() {
+        if (stopped) throw new IllegalStateException("Pipeline workers were interrupted, no URL will be taken");
+    }
+
+    // Called as each worker (or the dispatcher) exits. The last one out before finish() means nobody
+    // drains the queue any more: drop what is queued and release any producer waiting for space.
+    private void workerExited() {
+        if (liveWorkers.decrementAndGet() > 0 || finished) return;
+        stopped = true;
+        int dropped = 0;
+        for (String url = queue.poll(); url != null; url = queue.poll()) {
+            if (url != END_OF_STREAM) dropped++;
+        }
+        log.warn("Pipeline workers stopped before finish(), " + dropped + " queued URLs dropped");
+    }
+
+    public boolean isLimitReached() {
+        return limit > 0 && accepted.get() >= limit;
+    }
+
+    // Signals end of stream and waits for the workers to finish everything already queued
+    public void finish() throws InterruptedException {
+        if (finished) return;
+        finished = true;
+        try {
+            for (int i = 0; i < workerCount && !stopped; i++) {
+                while (!queue.offer(END_OF_STREAM, OFFER_WAIT_MS, TimeUnit.MILLISECONDS) && !stopped) {
+                    // workers still draining
+                }
+            }
+            if (dispatcher != null) {
+                dispatcher.join();
+                // Every permit back means every dispatched scrape has finished
+                inFlight.acquire(maxInFlight);
+                inFlight.release(maxInFlight);
+            }
+            workers.shutdown();
+            workers.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            if (dispatcher != null) dispatcher.interrupt();
+            workers.shutdownNow();
+            throw e;
+        }
+        log.info("Pipeline finished: accepted=" + accepted.get() + ", completed=" + completed.get() + ", failed=" + failed.get());
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                String url;
+                try {
+                    url = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (url == END_OF_STREAM) return;
+                if (!run(url)) return;
+            }
+        } finally {
+            workerExited();
+        }
+    }
+
+    private void dispatch() {
+        try {
+            dispatchLoop();
+        } finally {
+            workerExited();
+        }
+    }
+
+    private void dispatchLoop() {
+        while (true) {
+            String url;
+            try {
+                url = queue.take();
+                if (url == END_OF_STREAM) return;
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                workers.execute(() -> {
+                    try {
+                        run(url);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                failed.incrementAndGet();
+                log.warn("Failed to dispatch " + url + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Returns false when the worker was interrupted and should stop
+    private boolean run(String url) {
+        try {
+            task.scrape(url);
+            completed.incrementAndGet();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.warn("Failed to scrape " + url + ": " + e.getMessage());
+            return true;
+        }
+    }
+
+    public int getAccepted() {
+        return accepted.get();
+    }
+
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,63 @@
+package utilities;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Per-field found/missing counts and lookup time for recipe extraction, shared by all worker threads.
+// Shows which optional fields are usually absent and how much time their lookups cost.
+public class FieldStats {
+
+    private static final Map<String, Field> fields = new ConcurrentHashMap<>();
+
+    public static void record(String field, boolean found, long nanos) {
+        Field f = fields.computeIfAbsent(field, Field::new);
+        (found ? f.found : f.missing).increment();
+        f.nanos.add(nanos);
+        f.timer.record(nanos);
+        (found ? f.foundCounter : f.missingCounter).inc();
+    }
+
+    public static Map<String, Field> snapshot() {
+        return new TreeMap<>(fields);
+    }
+
+    public static void reset() {
+        fields.clear();
+    }
+
+    public static String summary() {
+        StringBuilder sb = new StringBuilder("Field lookups:");
+        snapshot().forEach((name, f) -> sb.append(String.format(" [%s found=%d missing=%d time=%dms]",
+                name, f.getFound(), f.getMissing(), f.getMillis())));
+        return sb.toString();
+    }
+
+    public static class Field {
+        private final LongAdder found = new LongAdder();
+        private final LongAdder missing = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final Metrics.Timer timer;
+        private final Metrics.Counter foundCounter;
+        private final Metrics.Counter missingCounter;
+
+        Field(String name) {
+            timer = Metrics.timer("scraper_field_lookup_seconds", "Time to read one recipe field", "field", name);
+            foundCounter = Metrics.counter("scraper_field_lookups_total", "Field lookups by outcome", "field", name, "result", "found");
+            missingCounter = Metrics.counter("scraper_field_lookups_total", "Field lookups by outcome", "field", name, "result", "missing");
+        }
+
+        public long getFound() {
+            return found.sum();
+        }
+
+        public long getMissing() {
+            return missing.sum();
+        }
+
+        public long getMillis() {
+            return nanos.sum() / 1_000_000;
+        }
+    }
+}
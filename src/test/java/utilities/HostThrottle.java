@@ -0,0 +1,262 @@
+package utilities;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Politeness and adaptive concurrency for every page fetch, per host:
+// - a token bucket caps the request rate (ratePerSecond, bursts up to burst requests)
+// - an AIMD controller sets how many fetches may be in flight. Each fast success adds 1/limit
+//   (about +1 per round of requests); an error, timeout or latency well above the host's baseline
+//   halves the limit, at most once per cooldown so one slow burst is not punished repeatedly.
+// Callers hold a Permit around the fetch itself and mark it failed on errors.
+public class HostThrottle {
+    private static final Logger log = LogManager.getLogger(HostThrottle.class.getName());
+
+    private static final double LATENCY_ALPHA = 0.2;     // EWMA weight of a new latency sample
+    private static final double BASELINE_DRIFT = 0.01;   // lets the baseline follow a lasting slowdown
+    private static final long MIN_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double ratePerSecond;
+    private final double burst;
+    private final double minLimit;
+    private final double maxLimit;
+    private final double initialLimit;
+    private final double latencyTolerance;
+
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    // ratePerSecond <= 0 disables the token bucket
+    public HostThrottle(double ratePerSecond, int burst, int minLimit, int initialLimit, int maxLimit, double latencyTolerance) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = Math.max(1, burst);
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.initialLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    // No rate cap and effectively no concurrency cap, for callers without a configured throttle
+    public static HostThrottle unlimited() {
+        return new HostThrottle(0, 1, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Double.MAX_VALUE);
+    }
+
+    // Blocks until the host has both a free concurrency slot and a rate token
+    public Permit acquire(String url) throws InterruptedException {
+        Host host = hosts.computeIfAbsent(hostOf(url), Host::new);
+        host.acquireSlot();
+        try {
+            host.takeToken();
+        } catch (InterruptedException e) {
+            host.release(0, false, false);
+            throw e;
+        }
+        return new Permit(host);
+    }
+
+    static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host.toLowerCase();
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    // ---------------- Metrics ----------------
+    public List<HostStats> stats() {
+        List<HostStats> all = new ArrayList<>();
+        for (Host h : hosts.values()) all.add(h.stats());
+        return all;
+    }
+
+    public HostStats stats(String host) {
+        Host h = hosts.get(host);
+        return h == null ? null : h.stats();
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder("Host throttle:");
+        for (HostStats s : stats()) {
+            sb.append(String.format(" [%s limit=%.1f inFlight=%d rate=%.2f/s (cap %.2f/s) latency=%.0fms requests=%d failures=%d decreases=%d]",
+                    s.host, s.limit, s.inFlight, s.observedRate, ratePerSecond, s.latencyMillis, s.requests, s.failures, s.decreases));
+        }
+        return sb.toString();
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    // Held for the duration of one fetch; close() releases the slot and feeds the controller
+    public static class Permit implements AutoCloseable {
+        private final Host host;
+        private final long start = System.nanoTime();
+        private boolean failed = false;
+        private boolean closed = false;
+
+        private Permit(Host host) {
+            this.host = host;
+        }
+
+        // Error, timeout, 429 or 5xx: counts as congestion
+        public void markFailed() {
+            failed = true;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            host.release(System.nanoTime() - start, failed, true);
+        }
+    }
+
+    public static class HostStats {
+        public final String host;
+        public final double limit;
+        public final int inFlight;
+        public final double observedRate;    // completed fetches per second since the first one
+        public final double latencyMillis;   // EWMA
+        public final long requests;
+        public final long failures;
+        public final long decreases;
+
+        HostStats(String host, double limit, int inFlight, double observedRate, double latencyMillis,
+                  long requests, long failures, long decreases) {
+            this.host = host;
+            this.limit = limit;
+            this.inFlight = inFlight;
+            this.observedRate = observedRate;
+            this.latencyMillis = latencyMillis;
+            this.requests = requests;
+            this.failures = failures;
+            this.decreases = decreases;
+        }
+    }
+
+    private class Host {
+        private final String name;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition slotFreed = lock.newCondition();
+
+        // AIMD state
+        private double limit = initialLimit;
+        private int inFlight = 0;
+        private double latencyEwma = -1;
+        private double baseline = Double.MAX_VALUE;
+        private long lastDecrease = 0;
+
+        // Token bucket
+        private double tokens = burst;
+        private long lastRefill = System.nanoTime();
+
+        private final long firstRequest = System.nanoTime();
+        private long requests, failures, decreases;
+
+        private final Metrics.Timer pageLoads;
+        private final Metrics.Counter pageErrors;
+
+        Host(String name) {
+            this.name = name;
+            pageLoads = Metrics.timer("scraper_page_load_seconds", "Page fetch time (listing and detail), per host", "host", name);
+            pageErrors = Metrics.counter("scraper_page_errors_total", "Page fetches that failed or were throttled", "host", name);
+            Metrics.gauge("scraper_host_concurrency_limit", "AIMD limit on fetches in flight", () -> stats().limit, "host", name);
+            Metrics.gauge("scraper_host_in_flight", "Fetches in flight", () -> stats().inFlight, "host", name);
+            Metrics.gauge("scraper_host_request_rate", "Observed fetches per second", () -> stats().observedRate, "host", name);
+            Metrics.gauge("scraper_host_rate_limit", "Token bucket rate, fetches per second", () -> ratePerSecond, "host", name);
+        }
+
+        void acquireSlot() throws InterruptedException {
+            lock.lock();
+            try {
+                while (inFlight >= (int) limit) slotFreed.await();
+                inFlight++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void takeToken() throws InterruptedException {
+            if (ratePerSecond <= 0) return;
+            while (true) {
+                long waitNanos;
+                lock.lock();
+                try {
+                    long now = System.nanoTime();
+                    tokens = Math.min(burst, tokens + (now - lastRefill) / 1e9 * ratePerSecond);
+                    lastRefill = now;
+                    if (tokens >= 1) {
+                        tokens -= 1;
+                        return;
+                    }
+                    waitNanos = (long) ((1 - tokens) / ratePerSecond * 1e9);
+                } finally {
+                    lock.unlock();
+                }
+                TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1_000_000));
+            }
+        }
+
+        void release(long latencyNanos, boolean failed, boolean completed) {
+            lock.lock();
+            try {
+                inFlight--;
+                if (completed) {
+                    pageLoads.record(latencyNanos);
+                    if (failed) pageErrors.inc();
+                    requests++;
+                    if (failed) {
+                        failures++;
+                        decrease();
+                    } else {
+                        observe(latencyNanos / 1e6);
+                    }
+                }
+                slotFreed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void observe(double millis) {
+            latencyEwma = latencyEwma < 0 ? millis : latencyEwma + LATENCY_ALPHA * (millis - latencyEwma);
+            baseline = Math.min(latencyEwma, baseline == Double.MAX_VALUE ? latencyEwma : baseline + BASELINE_DRIFT * (latencyEwma - baseline));
+            if (latencyEwma > baseline * latencyTolerance) {
+                decrease();
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+
+        private void decrease() {
+            long now = System.nanoTime();
+            long cooldown = Math.max(MIN_COOLDOWN_NANOS, (long) (Math.max(latencyEwma, 0) * 1e6));
+            if (lastDecrease != 0 && now - lastDecrease < cooldown) return;
+            lastDecrease = now;
+            double old = limit;
+            limit = Math.max(minLimit, limit / 2);
+            decreases++;
+            if (old != limit) log.info(String.format("[%s] Concurrency limit %.1f -> %.1f (latency %.0fms, baseline %.0fms)", name, old, limit, latencyEwma, baseline));
+        }
+
+        HostStats stats() {
+            lock.lock();
+            try {
+                double seconds = (System.nanoTime() - firstRequest) / 1e9;
+                return new HostStats(name, limit, inFlight, seconds > 0 ? requests / seconds : 0,
+                        Math.max(latencyEwma, 0), requests, failures, decreases);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
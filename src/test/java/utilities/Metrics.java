@@ -0,0 +1,313 @@
+package utilities;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+// Process-wide metrics registry: counters, timers (histograms in seconds) and gauges, each identified by
+// a name plus label pairs. Served in Prometheus text format by a Server on a local port and written as a JSON summary
+// at the end of a run. Recording is lock-free (LongAdder); look a series up once and keep it on hot paths
+// where the labels don't change.
+public class Metrics {
+    private static final Logger log = LogManager.getLogger(Metrics.class.getName());
+
+    // Upper bounds in seconds, from a cached field lookup up to a slow page load
+    private static final double[] BUCKETS = {0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    // ---------------- Registration ----------------
+    public static Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").series.computeIfAbsent(labelKey(labels), k -> new Counter());
+    }
+
+    public static Timer timer(String name, String help, String... labels) {
+        return (Timer) family(name, help, "histogram").series.computeIfAbsent(labelKey(labels), k -> new Timer());
+    }
+
+    // Re-registering the same name and labels replaces the supplier (e.g. the pipeline of the current crawl)
+    public static void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").series.put(labelKey(labels), new Gauge(value));
+    }
+
+    private static Family family(String name, String help, String type) {
+        Family f = families.computeIfAbsent(name, n -> new Family(help, type));
+        if (!f.type.equals(type)) throw new IllegalArgumentException(name + " is already a " + f.type);
+        return f;
+    }
+
+    private static String labelKey(String... labels) {
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("Labels must be name/value pairs");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(labels[i]).append("=\"").append(escapeLabel(labels[i + 1])).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String escapeLabel(String value) {
+        return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // ---------------- Metric types ----------------
+    public static class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    public static class Timer {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        Timer() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        public void record(long elapsedNanos) {
+            double seconds = elapsedNanos / 1e9;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (seconds <= BUCKETS[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            nanos.add(elapsedNanos);
+        }
+
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getSumSeconds() {
+            return nanos.sum() / 1e9;
+        }
+
+        // Upper bound of the bucket holding the q-quantile (Prometheus-style estimate)
+        public double quantileSeconds(double q) {
+            return snapshot().quantileSeconds(q);
+        }
+
+        // Bucket counts as of now; minus() of two snapshots gives the distribution recorded in between
+        public Snapshot snapshot() {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) counts[i] = buckets[i].sum();
+            return new Snapshot(counts, count.sum());
+        }
+    }
+
+    public static class Snapshot {
+        private final long[] buckets;
+        private final long count;      // includes samples above the last bucket
+
+        Snapshot(long[] buckets, long count) {
+            this.buckets = buckets;
+            this.count = count;
+        }
+
+        public Snapshot minus(Snapshot earlier) {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) counts[i] = buckets[i] - earlier.buckets[i];
+            return new Snapshot(counts, count - earlier.count);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double quantileSeconds(double q) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return BUCKETS[i];
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    private static class Gauge {
+        final DoubleSupplier value;
+
+        Gauge(DoubleSupplier value) {
+            this.value = value;
+        }
+
+        double get() {
+            try {
+                return value.getAsDouble();
+            } catch (RuntimeException e) {
+                return Double.NaN;
+            }
+        }
+    }
+
+    private static class Family {
+        final String help;
+        final String type;
+        final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    // ---------------- Prometheus export ----------------
+    public static String prometheusText() {
+        StringBuilder sb = new StringBuilder();
+        families.forEach((name, f) -> {
+            sb.append("# HELP ").append(name).append(' ').append(f.help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(f.type).append('\n');
+            f.series.forEach((labels, metric) -> {
+                if (metric instanceof Counter) {
+                    sample(sb, name, labels, ((Counter) metric).get());
+                } else if (metric instanceof Gauge) {
+                    sample(sb, name, labels, ((Gauge) metric).get());
+                } else {
+                    Timer t = (Timer) metric;
+                    long cumulative = 0;
+                    for (int i = 0; i < BUCKETS.length; i++) {
+                        cumulative += t.buckets[i].sum();
+                        sample(sb, name + "_bucket", withLabel(labels, "le", String.valueOf(BUCKETS[i])), cumulative);
+                    }
+                    sample(sb, name + "_bucket", withLabel(labels, "le", "+Inf"), t.getCount());
+                    sample(sb, name + "_sum", labels, t.getSumSeconds());
+                    sample(sb, name + "_count", labels, t.getCount());
+                }
+            });
+        });
+        return sb.toString();
+    }
+
+    private static String withLabel(String labels, String name, String value) {
+        return (labels.isEmpty() ? "" : labels + ",") + name + "=\"" + value + "\"";
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name);
+        if (!labels.isEmpty()) sb.append('{').append(labels).append('}');
+        sb.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) sb.append((long) value);
+        else sb.append(value);
+        sb.append('\n');
+    }
+
+    // GET /metrics on 127.0.0.1, owned and closed by whoever started it. Port 0 picks a free port.
+    public static class Server implements AutoCloseable {
+        private final HttpServer http;
+
+        public Server(int port) throws IOException {
+            http = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+            http.createContext("/metrics", exchange -> {
+                byte[] body = prometheusText().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            http.setExecutor(Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "metrics-http");
+                t.setDaemon(true);
+                return t;
+            }));
+            http.start();
+            log.info("Metrics at http://127.0.0.1:" + getPort() + "/metrics");
+        }
+
+        public int getPort() {
+            return http.getAddress().getPort();
+        }
+
+        @Override
+        public void close() {
+            http.stop(0);
+        }
+    }
+
+    // ---------------- JSON summary ----------------
+    public static void writeJsonSummary(Path file) throws IOException {
+        StringBuilder counters = new StringBuilder();
+        StringBuilder gauges = new StringBuilder();
+        StringBuilder timers = new StringBuilder();
+        families.forEach((name, f) -> f.series.forEach((labels, metric) -> {
+            String key = jsonString(labels.isEmpty() ? name : name + "{" + labels + "}");
+            if (metric instanceof Counter) {
+                append(counters, key + ": " + ((Counter) metric).get());
+            } else if (metric instanceof Gauge) {
+                append(gauges, key + ": " + jsonNumber(((Gauge) metric).get()));
+            } else {
+                Timer t = (Timer) metric;
+                double meanMs = t.getCount() == 0 ? 0 : t.getSumSeconds() * 1000 / t.getCount();
+                append(timers, key + String.format(": {\"count\": %d, \"totalSeconds\": %s, \"meanMs\": %s, \"p50Ms\": %s, \"p99Ms\": %s}",
+                        t.getCount(), jsonNumber(t.getSumSeconds()), jsonNumber(meanMs),
+                        jsonNumber(t.quantileSeconds(0.5) * 1000), jsonNumber(t.quantileSeconds(0.99) * 1000)));
+            }
+        }));
+        String json = "{\n  \"generatedAt\": " + jsonString(Instant.now().toString()) + ",\n"
+                + "  \"counters\": {" + counters + "\n  },\n"
+                + "  \"gauges\": {" + gauges + "\n  },\n"
+                + "  \"timers\": {" + timers + "\n  }\n}\n";
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        Files.writeString(file, json, StandardCharsets.UTF_8);
+        log.info("Metrics summary written to " + file.toAbsolutePath());
+    }
+
+    private static void append(StringBuilder sb, String entry) {
+        sb.append(sb.length() == 0 ? "\n    " : ",\n    ").append(entry);
+    }
+
+    private static String jsonNumber(double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) return "null";
+        return String.format(Locale.ROOT, "%.3f", v);
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c == '\n') sb.append("\\n");
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    // For tests
+    public static void reset() {
+        families.clear();
+    }
+}
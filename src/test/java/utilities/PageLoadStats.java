@@ -0,0 +1,53 @@
+package utilities;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bytes transferred and time to readable per rendered detail page, by browser profile (full / lean),
+// so the saving from request blocking and the eager load strategy shows up side by side.
+public class PageLoadStats {
+
+    private static final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+
+    public static void record(String profile, long bytes, long requests, long readyNanos) {
+        Profile p = profiles.computeIfAbsent(profile, Profile::new);
+        p.pages.increment();
+        p.bytes.add(bytes);
+        p.requests.add(requests);
+        p.bytesCounter.add(bytes);
+        p.requestsCounter.add(requests);
+        p.readyTimer.record(readyNanos);
+    }
+
+    public static void reset() {
+        profiles.clear();
+    }
+
+    public static String summary() {
+        StringBuilder sb = new StringBuilder("Page loads:");
+        new TreeMap<>(profiles).forEach((name, p) -> {
+            long pages = Math.max(1, p.pages.sum());
+            sb.append(String.format(" [%s pages=%d avg=%.1fKB requests/page=%.1f ready p50=%.0fms p99=%.0fms]",
+                    name, p.pages.sum(), p.bytes.sum() / 1024.0 / pages, (double) p.requests.sum() / pages,
+                    p.readyTimer.quantileSeconds(0.5) * 1000, p.readyTimer.quantileSeconds(0.99) * 1000));
+        });
+        return sb.toString();
+    }
+
+    private static class Profile {
+        private final LongAdder pages = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder requests = new LongAdder();
+        private final Metrics.Counter bytesCounter;
+        private final Metrics.Counter requestsCounter;
+        private final Metrics.Timer readyTimer;
+
+        Profile(String name) {
+            bytesCounter = Metrics.counter("scraper_page_bytes_total", "Bytes transferred by rendered detail pages", "profile", name);
+            requestsCounter = Metrics.counter("scraper_page_requests_total", "Requests made by rendered detail pages", "profile", name);
+            readyTimer = Metrics.timer("scraper_page_ready_seconds", "Navigation start until the detail page's DOMContentLoaded ended", "profile", name);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package utilities;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Local stand-in for tarladalal.com with the markup the page objects expect: listing pages at
+// /recipes/?page=N (h5/a links, windowed page-link pagination with Next) and detail pages at /recipes/<slug>-<n>
+// (rec-heading, #ingredients, #methods, figure.table, tags-list, ...). Content is generated from the
+// recipe number, so every run sees the same site. Each response is delayed by latencyMillis plus an
+// exponentially distributed jitter (long tail), and detail pages fail with 503 at errorRate.
+public class StubRecipeSite implements AutoCloseable {
+
+    private static final String[] DISHES = {"Paneer Tikka", "Methi Thepla", "Rice Kheer", "Egg Curry", "Palak Soup",
+            "Potato Sabzi", "Ghee Roast Dosa", "Corn Chaat", "Cottage Cheese Salad", "Sugarfree Ladoo"};
+    private static final String[] INGREDIENTS = {"paneer", "ghee", "egg", "rice", "sugar", "potato", "spinach",
+            "tomatoes", "cottage cheese", "corn syrup", "cumin seeds", "green chillies", "curds", "butter", "oats"};
+    private static final String[] TAGS = {"Breakfast", "Lunch", "Dinner", "Snack", "Dessert", "Soup"};
+    private static final int PAGE_WINDOW = 2;
+
+    private final int pages;
+    private final int recipesPerPage;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final long seed;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public StubRecipeSite(int pages, int recipesPerPage, long latencyMillis, long jitterMillis, double errorRate, long seed)
+            throws IOException {
+        this.pages = pages;
+        this.recipesPerPage = recipesPerPage;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        this.seed = seed;
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/recipes/", this::handle);
+        handlers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-site");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public String listingUrl() {
+        return baseUrl() + "/recipes/";
+    }
+
+    public String recipeUrl(int n) {
+        return baseUrl() + "/recipes/" + slug(n);
+    }
+
+    public int recipeCount() {
+        return pages * recipesPerPage;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    // ---------------- Routing ----------------
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            delay();
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/recipes/") || path.equals("/recipes")) {
+                respond(exchange, 200, listingHtml(pageNumber(exchange.getRequestURI().getQuery())));
+                return;
+            }
+            int n = recipeNumber(path);
+            if (n < 0) {
+                respond(exchange, 404, "<html><body>Not found</body></html>");
+            } else if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                respond(exchange, 503, "<html><body>Service unavailable</body></html>");
+            } else {
+                respond(exchange, 200, detailHtml(n));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void delay() throws InterruptedException {
+        long jitter = jitterMillis <= 0 ? 0 : (long) (-jitterMillis * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+        long millis = latencyMillis + jitter;
+        if (millis > 0) Thread.sleep(millis);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String html) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static int pageNumber(String query) {
+        if (query == null) return 1;
+        for (String pair : query.split("&")) {
+            if (pair.startsWith("page=")) {
+                try {
+                    return Integer.parseInt(pair.substring(5));
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private int recipeNumber(String path) {
+        int dash = path.lastIndexOf('-');
+        if (dash < 0) return -1;
+        try {
+            int n = Integer.parseInt(path.substring(dash + 1));
+            return (n >= 0 && n < recipeCount()) ? n : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String slug(int n) {
+        return DISHES[n % DISHES.length].toLowerCase().replace(' ', '-') + "-" + n;
+    }
+
+    // ---------------- Pages ----------------
+    private String listingHtml(int page) {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>Recipes</title></head><body><div class=\"container\">");
+        if (page >= 1 && page <= pages) {
+            for (int i = 0; i < recipesPerPage; i++) {
+                int n = (page - 1) * recipesPerPage + i;
+                html.append("<div class=\"recipe-card\"><h5><a href=\"/recipes/").append(slug(n)).append("\">")
+                        .append(DISHES[n % DISHES.length]).append("</a></h5></div>");
+            }
+        }
+        html.append("<ul class=\"pagination\">");
+        // A window of page numbers around the current page, like the real paginator
+        for (int p = Math.max(1, page - PAGE_WINDOW); p <= Math.min(pages, page + PAGE_WINDOW); p++) {
+            html.append("<li class=\"page-item\"><a class=\"page-link\" href=\"/recipes/?page=").append(p).append("\">").append(p).append("</a></li>");
+        }
+        if (page < pages) {
+            html.append("<li class=\"page-item\"><a class=\"page-link\" href=\"/recipes/?page=").append(page + 1).append("\">Next</a></li>");
+        }
+        return html.append("</ul></div></body></html>").toString();
+    }
+
+    private String detailHtml(int n) {
+        Random rnd = new Random(seed * 31 + n);
+        String dish = DISHES[n % DISHES.length];
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>")
+                .append(dish).append("</title></head><body><div class=\"container\">")
+                .append("<h1 class=\"rec-heading\"><span>").append(dish).append(' ').append(n).append("</span></h1>")
+                .append("<p><span>by Tarla Dalal</span> <span>|</span> <span><a href=\"/recipes-for-indian\">Indian</a></span></p>")
+                .append("<div class=\"row\"><div class=\"col-4\"><h6>Preparation Time</h6><p><strong>")
+                .append(5 + rnd.nextInt(30)).append(" mins</strong></p></div>")
+                .append("<div class=\"col-4 content-last\"><h6>Cooking Time</h6><p><strong>")
+                .append(10 + rnd.nextInt(40)).append(" mins</strong></p></div>");
+        // Some recipes lack the optional fields, like on the real site
+        if (rnd.nextInt(5) != 0) {
+            html.append("<div class=\"col-4\"><h6>Makes</h6><p><strong>").append(1 + rnd.nextInt(6)).append(" servings</strong></p></div>");
+        }
+        html.append("</div><div id=\"aboutrecipe\"><p>").append(dish).append(" made the simple way.</p></div><div id=\"ingredients\">");
+        int count = 4 + rnd.nextInt(6);
+        for (int i = 0; i < count; i++) {
+            html.append("<p>").append(1 + rnd.nextInt(3)).append(" cup ").append(INGREDIENTS[rnd.nextInt(INGREDIENTS.length)]).append("</p>");
+        }
+        html.append("</div><div id=\"methods\"><ol>");
+        for (int i = 1; i <= 3; i++) html.append("<li>Step ").append(i).append(" for ").append(dish).append(".</li>");
+        html.append("</ol></div>");
+        if (rnd.nextInt(4) != 0) {
+            html.append("<figure class=\"table\"><table><tbody>")
+                    .append("<tr><td>Energy</td><td>").append(100 + rnd.nextInt(300)).append(" cal</td></tr>")
+                    .append("<tr><td>Protein</td><td>").append(rnd.nextInt(20)).append(" g</td></tr>")
+                    .append("<tr><td>Fat</td><td>").append(rnd.nextInt(25)).append(" g</td></tr>")
+                    .append("</tbody></table></figure>");
+        }
+        html.append("<ul class=\"tags-list\"><li><a href=\"/tags/").append(n % TAGS.length).append("\">")
+                .append(TAGS[n % TAGS.length]).append("</a></li></ul>");
+        return html.append("</div></body></html>").toString();
+    }
+}
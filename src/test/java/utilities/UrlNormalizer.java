@@ -0,0 +1,84 @@
+package utilities;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+
+// Canonical form of a recipe URL, so the same page reached through different links is one recipe:
+// - scheme and host lower-cased, default port, fragment and empty query dropped
+// - tracking parameters (utm_*, gclid, fbclid, ...) removed, the remaining ones sorted
+// - duplicate slashes collapsed and a trailing slash removed (except for the root path)
+// - optionally the path lower-cased, for case-insensitive servers such as the recipe site's IIS
+// Anything that doesn't parse as an absolute http(s) URL is returned trimmed but otherwise unchanged.
+// The canonical form is a dedup key only: pages are fetched and stored under the URL the listing linked to.
+public class UrlNormalizer {
+
+    private static final Set<String> TRACKING_PARAMS = Set.of(
+            "gclid", "dclid", "fbclid", "msclkid", "yclid", "mc_cid", "mc_eid", "_ga", "_gl");
+
+    private final boolean lowercasePath;
+    private final Set<String> dropParams = new HashSet<>(TRACKING_PARAMS);
+
+    public UrlNormalizer() {
+        this(false, List.of());
+    }
+
+    // extraParams are dropped as well, matched ignoring case
+    public UrlNormalizer(boolean lowercasePath, Collection<String> extraParams) {
+        this.lowercasePath = lowercasePath;
+        for (String p : extraParams) {
+            if (!p.isBlank()) dropParams.add(p.trim().toLowerCase());
+        }
+    }
+
+    public String normalize(String url) {
+        if (url == null) return null;
+        String trimmed = url.trim();
+        URI uri;
+        try {
+            uri = new URI(trimmed);
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+        String scheme = uri.getScheme();
+        if (scheme == null || uri.getRawAuthority() == null) return trimmed;
+        scheme = scheme.toLowerCase();
+        if (!scheme.equals("http") && !scheme.equals("https")) return trimmed;
+
+        StringBuilder sb = new StringBuilder(trimmed.length());
+        sb.append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) sb.append(uri.getRawUserInfo()).append('@');
+        sb.append(uri.getHost() == null ? uri.getRawAuthority().toLowerCase() : uri.getHost().toLowerCase());
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            sb.append(':').append(port);
+        }
+        sb.append(path(uri.getRawPath()));
+
+        String query = query(uri.getRawQuery());
+        if (!query.isEmpty()) sb.append('?').append(query);
+        return sb.toString();
+    }
+
+    private String path(String rawPath) {
+        if (rawPath == null || rawPath.isEmpty()) return "/";
+        String path = rawPath.replaceAll("/{2,}", "/");
+        if (path.length() > 1 && path.endsWith("/")) path = path.substring(0, path.length() - 1);
+        return lowercasePath ? path.toLowerCase() : path;
+    }
+
+    private String query(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) return "";
+        List<String> kept = new ArrayList<>();
+        for (String param : rawQuery.split("&")) {
+            if (param.isEmpty()) continue;
+            int eq = param.indexOf('=');
+            String name = (eq < 0 ? param : param.substring(0, eq)).toLowerCase();
+            if (name.startsWith("utm_") || dropParams.contains(name)) continue;
+            kept.add(param);
+        }
+        // Stable sort: repeated parameters keep their relative order
+        kept.sort(Comparator.comparing(p -> p.indexOf('=') < 0 ? p : p.substring(0, p.indexOf('='))));
+        return String.join("&", kept);
+    }
+}
@@ -0,0 +1,185 @@
+package utilities;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The set of recipe URLs a crawl has already queued, shared by reference between the listing walker
+// and the frontier. URLs are canonicalized by a UrlNormalizer before every lookup, and lookups are O(1):
+// - EXACT keeps the canonical strings in a concurrent hash set
+// - COMPACT keeps only a 64-bit fingerprint per URL in primitive open-addressing tables, about 10-16
+//   bytes per URL instead of a String and a map node. Two different URLs share a fingerprint with
+//   probability ~n^2 / 2^65, about 3e-8 for a million URLs; such a URL would be skipped as visited.
+public abstract class VisitedUrls {
+
+    public static final String EXACT = "exact";
+    public static final String COMPACT = "compact";
+
+    private final UrlNormalizer normalizer;
+
+    protected VisitedUrls(UrlNormalizer normalizer) {
+        this.normalizer = normalizer;
+    }
+
+    // mode is EXACT or COMPACT; expectedUrls sizes the compact tables up front
+    public static VisitedUrls create(String mode, UrlNormalizer normalizer, int expectedUrls) {
+        if (COMPACT.equalsIgnoreCase(mode)) return new Compact(normalizer, expectedUrls);
+        return new Exact(normalizer);
+    }
+
+    public String normalize(String url) {
+        return normalizer.normalize(url);
+    }
+
+    // True when the URL was not in the set before
+    public boolean add(String url) {
+        return addCanonical(normalize(url));
+    }
+
+    public boolean contains(String url) {
+        return containsCanonical(normalize(url));
+    }
+
+    public void addAll(Iterable<String> urls) {
+        for (String url : urls) add(url);
+    }
+
+    public abstract int size();
+
+    protected abstract boolean addCanonical(String url);
+
+    protected abstract boolean containsCanonical(String url);
+
+    // ---------------- Exact ----------------
+    private static class Exact extends VisitedUrls {
+        private final Set<String> urls = ConcurrentHashMap.newKeySet();
+
+        Exact(UrlNormalizer normalizer) {
+            super(normalizer);
+        }
+
+        @Override
+        protected boolean addCanonical(String url) {
+            return urls.add(url);
+        }
+
+        @Override
+        protected boolean containsCanonical(String url) {
+            return urls.contains(url);
+        }
+
+        @Override
+        public int size() {
+            return urls.size();
+        }
+    }
+
+    // ---------------- Compact ----------------
+    // Fingerprints are spread over independently locked segments by their top bits, so the walker and
+    // the frontier rarely contend. Each segment is a linear-probing long[] with 0 marking an empty slot.
+    private static class Compact extends VisitedUrls {
+        private static final int SEGMENT_BITS = 4;
+        private static final double MAX_LOAD = 0.7;
+
+        private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+        Compact(UrlNormalizer normalizer, int expectedUrls) {
+            super(normalizer);
+            int perSegment = Math.max(16, (int) (expectedUrls / MAX_LOAD) >> SEGMENT_BITS);
+            for (int i = 0; i < segments.length; i++) segments[i] = new Segment(Integer.highestOneBit(perSegment - 1) << 1);
+        }
+
+        @Override
+        protected boolean addCanonical(String url) {
+            long fp = fingerprint(url);
+            return segments[(int) (fp >>> (64 - SEGMENT_BITS))].add(fp);
+        }
+
+        @Override
+        protected boolean containsCanonical(String url) {
+            long fp = fingerprint(url);
+            return segments[(int) (fp >>> (64 - SEGMENT_BITS))].contains(fp);
+        }
+
+        @Override
+        public int size() {
+            int n = 0;
+            for (Segment s : segments) n += s.size();
+            return n;
+        }
+
+        private static class Segment {
+            private final ReentrantLock lock = new ReentrantLock();
+            private long[] table;
+            private int size;
+
+            Segment(int capacity) {
+                table = new long[capacity];
+            }
+
+            boolean add(long fp) {
+                lock.lock();
+                try {
+                    int slot = find(table, fp);
+                    if (table[slot] == fp) return false;
+                    table[slot] = fp;
+                    if (++size > table.length * MAX_LOAD) grow();
+                    return true;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            boolean contains(long fp) {
+                lock.lock();
+                try {
+                    return table[find(table, fp)] == fp;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            int size() {
+                lock.lock();
+                try {
+                    return size;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            // Slot holding fp, or the empty slot where it belongs
+            private static int find(long[] table, long fp) {
+                int mask = table.length - 1;
+                int slot = (int) fp & mask;
+                while (table[slot] != 0 && table[slot] != fp) slot = (slot + 1) & mask;
+                return slot;
+            }
+
+            private void grow() {
+                long[] bigger = new long[table.length * 2];
+                for (long fp : table) {
+                    if (fp != 0) bigger[find(bigger, fp)] = fp;
+                }
+                table = bigger;
+            }
+        }
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so both the low bits
+    // (slot) and the top bits (segment) are well spread. Never 0, which marks an empty slot.
+    static long fingerprint(String url) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : url.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,52 @@
+package utilities;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Executors for the scraping workers. "virtual" gives one virtual thread per task (JDK 21+);
+// on older JDKs it falls back to a cached pool of platform threads. Either way the caller bounds
+// how many tasks run at once, not the executor.
+public class WorkerThreads {
+    private static final Logger log = LogManager.getLogger(WorkerThreads.class.getName());
+
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    // Looked up reflectively so the project still compiles and runs on JDK 17
+    private static final Method NEW_VIRTUAL_EXECUTOR = findVirtualExecutorFactory();
+
+    public static boolean virtualThreadsAvailable() {
+        return NEW_VIRTUAL_EXECUTOR != null;
+    }
+
+    public static ExecutorService perTaskExecutor(String namePrefix) {
+        if (NEW_VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Could not create virtual thread executor: " + e.getMessage());
+            }
+        } else {
+            log.warn("Virtual threads need JDK 21+, running " + System.getProperty("java.version") + "; using platform threads");
+        }
+        AtomicInteger n = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, namePrefix + "-" + n.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static Method findVirtualExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}